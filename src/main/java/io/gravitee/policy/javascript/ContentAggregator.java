@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the chunks of a body until it ends, as long as it does not exceed {@code maxContentSize} bytes. Once exceeded, the chunks
+ * held so far are released and the following ones are not held anymore, so that no more than the maximum size plus one chunk is kept
+ * in memory.
+ *
+ * @author GraviteeSource Team
+ */
+class ContentAggregator {
+
+    private final long maxContentSize;
+    private List<Buffer> chunks = new ArrayList<>();
+    private long size;
+    private boolean exceeded;
+
+    ContentAggregator(long maxContentSize) {
+        this.maxContentSize = maxContentSize;
+    }
+
+    /**
+     * @return whether the chunk has been held, false once the maximum size is exceeded.
+     */
+    boolean append(Buffer chunk) {
+        if (exceeded) {
+            return false;
+        }
+        chunks.add(chunk);
+        size += chunk.length();
+        exceeded = size > maxContentSize;
+        return !exceeded;
+    }
+
+    boolean isExceeded() {
+        return exceeded;
+    }
+
+    /**
+     * @return the chunks held so far, which are not held anymore.
+     */
+    List<Buffer> release() {
+        final List<Buffer> released = chunks;
+        chunks = new ArrayList<>();
+        return released;
+    }
+
+    /**
+     * @return the chunks held so far, merged in a single buffer.
+     */
+    Buffer content() {
+        final List<Buffer> released = release();
+        if (released.size() == 1) {
+            return released.get(0);
+        }
+        final Buffer content = Buffer.buffer();
+        released.forEach(content::appendBuffer);
+        return content;
+    }
+}
@@ -18,23 +18,111 @@ package io.gravitee.policy.javascript;
 import io.gravitee.policy.api.PolicyContext;
 import io.gravitee.policy.api.PolicyContextProvider;
 import io.gravitee.policy.api.PolicyContextProviderAware;
+import io.gravitee.policy.javascript.eval.CompiledScriptCache;
+import io.gravitee.policy.javascript.eval.ExecutionBudget;
+import io.gravitee.policy.javascript.eval.GlobalPool;
+import io.gravitee.policy.javascript.eval.PersistentCodeCache;
+import io.gravitee.policy.javascript.eval.ScriptContextFactory;
+import io.gravitee.policy.javascript.eval.ScriptEngines;
+import io.gravitee.policy.javascript.eval.ScriptSandbox;
+import io.gravitee.policy.javascript.model.js.HttpCallCoalescer;
+import io.gravitee.policy.javascript.model.js.HttpClientMetrics;
+import io.gravitee.policy.javascript.model.js.HttpResponseCache;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.http.PoolOptions;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import javax.script.*;
+import lombok.CustomLog;
+import org.apache.commons.lang3.ArrayUtils;
 import org.openjdk.nashorn.api.scripting.NashornScriptEngineFactory;
+import org.springframework.core.env.Environment;
 
 /**
  * @author Jeoffrey HAEYAERT (jeoffrey.haeyaert at graviteesource.com)
  * @author GraviteeSource Team
  */
+@CustomLog
 public class JavascriptInitializer implements PolicyContext, PolicyContextProviderAware {
 
+    static final String SCRIPT_CACHE_MAX_SIZE_PROPERTY = "policy.javascript.scriptCache.maxSize";
+    static final String CODE_CACHE_ENABLED_PROPERTY = "policy.javascript.codeCache.enabled";
+    static final String CODE_CACHE_DIRECTORY_PROPERTY = "policy.javascript.codeCache.directory";
+    static final String CODE_CACHE_MAX_SIZE_PROPERTY = "policy.javascript.codeCache.maxSize";
+    static final String GLOBAL_POOL_MAX_IDLE_PER_THREAD_PROPERTY = "policy.javascript.globalPool.maxIdlePerThread";
+    static final String ENGINE_SHARDS_PROPERTY = "policy.javascript.engine.shards";
+    static final String WORKER_POOL_SIZE_PROPERTY = "policy.javascript.worker.poolSize";
+    static final String WORKER_QUEUE_SIZE_PROPERTY = "policy.javascript.worker.queueSize";
+    static final String HTTP_CLIENT_CONNECT_TIMEOUT_PROPERTY = "policy.javascript.httpClient.connectTimeout";
+    static final String HTTP_CLIENT_KEEP_ALIVE_PROPERTY = "policy.javascript.httpClient.keepAlive";
+    static final String HTTP_CLIENT_KEEP_ALIVE_TIMEOUT_PROPERTY = "policy.javascript.httpClient.keepAliveTimeout";
+    static final String HTTP_CLIENT_IDLE_TIMEOUT_PROPERTY = "policy.javascript.httpClient.idleTimeout";
+    static final String HTTP_CLIENT_MAX_CONNECTIONS_PER_HOST_PROPERTY = "policy.javascript.httpClient.maxConnectionsPerHost";
+    static final String HTTP_CLIENT_MAX_WAIT_QUEUE_SIZE_PROPERTY = "policy.javascript.httpClient.maxWaitQueueSize";
+    static final String HTTP_CLIENT_PIPELINING_PROPERTY = "policy.javascript.httpClient.pipelining";
+    static final String HTTP_CLIENT_PIPELINING_LIMIT_PROPERTY = "policy.javascript.httpClient.pipeliningLimit";
+    static final String HTTP_CLIENT_HTTP2_ENABLED_PROPERTY = "policy.javascript.httpClient.http2.enabled";
+    static final String HTTP_CLIENT_HTTP2_MAX_CONNECTIONS_PER_HOST_PROPERTY = "policy.javascript.httpClient.http2.maxConnectionsPerHost";
+    static final String HTTP_CLIENT_HTTP2_MULTIPLEXING_LIMIT_PROPERTY = "policy.javascript.httpClient.http2.multiplexingLimit";
+    static final String HTTP_CLIENT_CACHE_MAX_SIZE_PROPERTY = "policy.javascript.httpClient.cache.maxSize";
+    static final String HTTP_CLIENT_CACHE_TTL_PROPERTY = "policy.javascript.httpClient.cache.ttl";
+    static final String HTTP_CLIENT_CACHE_KEY_HEADERS_PROPERTY = "policy.javascript.httpClient.cache.keyHeaders";
+    static final String HTTP_CLIENT_COALESCING_ENABLED_PROPERTY = "policy.javascript.httpClient.coalescing.enabled";
+    static final String HTTP_CLIENT_MAX_RESPONSE_SIZE_PROPERTY = "policy.javascript.httpClient.maxResponseSize";
+    static final String METRICS_LOG_INTERVAL_PROPERTY = "policy.javascript.metrics.logInterval";
+
+    private static final String[] ENGINE_OPTIONS = { "-strict", "--no-java", "--no-syntax-extensions", "--optimistic-types=true" };
+    private static final long DEFAULT_CODE_CACHE_MAX_SIZE = 100L * 1024 * 1024;
+    private static final int DEFAULT_WORKER_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_HTTP_CLIENT_CONNECT_TIMEOUT = 3000;
+    private static final int DEFAULT_HTTP_CLIENT_IDLE_TIMEOUT = 60;
+    private static final int DEFAULT_HTTP_CLIENT_MAX_CONNECTIONS_PER_HOST = 30;
+    private static final int DEFAULT_HTTP_CLIENT_HTTP2_MAX_CONNECTIONS_PER_HOST = 1;
+    private static final long DEFAULT_HTTP_CLIENT_CACHE_TTL = 60_000;
+    private static final String DEFAULT_HTTP_CLIENT_CACHE_KEY_HEADERS = "Accept,Accept-Encoding,Authorization";
+    private static final long DEFAULT_METRICS_LOG_INTERVAL = 60_000;
+
     public static HttpClient HTTP_CLIENT;
+    /**
+     * Occupancy of the pool of {@link #HTTP_CLIENT}.
+     */
+    public static final HttpClientMetrics HTTP_CLIENT_METRICS = new HttpClientMetrics();
+    /**
+     * Responses to the GET calls of the scripts, null when the cache is disabled, which is the default.
+     */
+    public static HttpResponseCache HTTP_CLIENT_CACHE;
+    /**
+     * Identical GET and HEAD calls in flight, null when the coalescing is disabled, which is the default.
+     */
+    public static HttpCallCoalescer HTTP_CLIENT_COALESCER;
+    /**
+     * Maximum size, in bytes, of the body of a response to a call of the scripts, 0 for no limit, which is the default.
+     */
+    public static long HTTP_CLIENT_MAX_RESPONSE_SIZE;
+    /**
+     * The engine of the first shard, see {@link #SCRIPT_ENGINES}.
+     */
     public static ScriptEngine JAVASCRIPT_ENGINE;
+    public static ScriptEngines SCRIPT_ENGINES;
+    public static CompiledScriptCache SCRIPT_CACHE;
+    /**
+     * Evaluates the scripts of the policies using the {@link io.gravitee.policy.javascript.configuration.ExecutionMode#WORKER} mode.
+     */
+    public static ExecutorService SCRIPT_WORKERS;
     private static Boolean initialized = false;
+    private static Long metricsLogTimerId;
     private static Vertx vertx;
+    private static Environment environment;
 
     @Override
     public void onActivation() throws Exception {
@@ -42,7 +130,9 @@ public class JavascriptInitializer implements PolicyContext, PolicyContextProvid
     }
 
     @Override
-    public void onDeactivation() throws Exception {}
+    public void onDeactivation() throws Exception {
+        shutDownJavascriptEngine();
+    }
 
     @Override
     public void setPolicyContextProvider(PolicyContextProvider policyContextProvider) {
@@ -52,43 +142,187 @@ public class JavascriptInitializer implements PolicyContext, PolicyContextProvid
     private static synchronized void setContext(PolicyContextProvider policyContextProvider) {
         if (!initialized) {
             vertx = policyContextProvider.getComponent(Vertx.class);
+            environment = policyContextProvider.getComponent(Environment.class);
         }
     }
 
     private static synchronized void initJavascriptEngine() {
         if (!initialized) {
-            NashornScriptEngineFactory factory = new NashornScriptEngineFactory();
-            JAVASCRIPT_ENGINE = factory.getScriptEngine(
-                new String[] { "-strict", "--no-java", "--no-syntax-extensions", "--optimistic-types=true" },
-                JavascriptInitializer.class.getClassLoader(),
-                className -> false
+            final PersistentCodeCache codeCache = codeCache();
+            final String[] engineOptions = codeCache != null
+                ? ArrayUtils.addAll(ENGINE_OPTIONS, codeCache.engineOptions())
+                : ENGINE_OPTIONS;
+            final int maxIdleGlobalsPerThread = getProperty(
+                GLOBAL_POOL_MAX_IDLE_PER_THREAD_PROPERTY,
+                Integer.class,
+                GlobalPool.DEFAULT_MAX_IDLE_PER_THREAD
+            );
+
+            final Supplier<ScriptEngines> scriptEngines = () ->
+                new ScriptEngines(
+                    engineShards(),
+                    () -> createEngine(engineOptions),
+                    engine ->
+                        new GlobalPool(engine, new ScriptSandbox(engine), ScriptContextFactory::initializeBindings, maxIdleGlobalsPerThread)
+                );
+            SCRIPT_ENGINES = codeCache != null ? codeCache.createEngines(scriptEngines) : scriptEngines.get();
+            JAVASCRIPT_ENGINE = SCRIPT_ENGINES.all().get(0);
+            SCRIPT_CACHE = new CompiledScriptCache(
+                getProperty(SCRIPT_CACHE_MAX_SIZE_PROPERTY, Integer.class, CompiledScriptCache.DEFAULT_MAX_SIZE)
             );
 
-            final Bindings bd = JAVASCRIPT_ENGINE.getBindings(ScriptContext.ENGINE_SCOPE);
-            bd.remove("load");
-            bd.remove("loadWithNewGlobal");
-            bd.remove("exit");
-            bd.remove("eval");
-            bd.remove("quit");
+            SCRIPT_WORKERS = createWorkers(
+                getProperty(WORKER_POOL_SIZE_PROPERTY, Integer.class, Runtime.getRuntime().availableProcessors()),
+                getProperty(WORKER_QUEUE_SIZE_PROPERTY, Integer.class, DEFAULT_WORKER_QUEUE_SIZE)
+            );
 
             initHttpClient();
+            HTTP_CLIENT_CACHE = httpClientCache();
+            HTTP_CLIENT_COALESCER = getProperty(HTTP_CLIENT_COALESCING_ENABLED_PROPERTY, Boolean.class, false)
+                ? new HttpCallCoalescer()
+                : null;
+            HTTP_CLIENT_MAX_RESPONSE_SIZE = getProperty(HTTP_CLIENT_MAX_RESPONSE_SIZE_PROPERTY, Long.class, 0L);
+            scheduleMetricsLog();
             initialized = true;
         }
     }
 
+    /**
+     * Stops the tasks started by {@link #initJavascriptEngine()}, so that the policy is initialized again once activated.
+     */
+    private static synchronized void shutDownJavascriptEngine() {
+        if (initialized) {
+            if (metricsLogTimerId != null) {
+                vertx.cancelTimer(metricsLogTimerId);
+                metricsLogTimerId = null;
+            }
+            SCRIPT_WORKERS.shutdown();
+            if (HTTP_CLIENT != null) {
+                HTTP_CLIENT.close();
+                HTTP_CLIENT = null;
+            }
+            initialized = false;
+        }
+    }
+
+    /**
+     * Logs the metrics of the policy at debug level, every minute by default. Setting the interval to 0 disables it.
+     */
+    private static void scheduleMetricsLog() {
+        final long interval = getProperty(METRICS_LOG_INTERVAL_PROPERTY, Long.class, DEFAULT_METRICS_LOG_INTERVAL);
+        if (vertx != null && interval > 0) {
+            metricsLogTimerId = vertx.setPeriodic(interval, timerId -> {
+                if (log.isDebugEnabled()) {
+                    log.debug(metricsReport());
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the occupancy of the HTTP client of the scripts, the hit ratio of its cache, the number of scripts interrupted by their
+     * timeout and the number of messages dropped by the scripts.
+     */
+    static String metricsReport() {
+        return (
+            "Javascript policy metrics: httpClient=" +
+            HTTP_CLIENT_METRICS +
+            ", httpClientCache=" +
+            (HTTP_CLIENT_CACHE != null ? HTTP_CLIENT_CACHE : "disabled") +
+            ", timeouts=" +
+            ExecutionBudget.timeouts() +
+            ", droppedMessages=" +
+            JavascriptPolicy.droppedMessages()
+        );
+    }
+
+    private static ScriptEngine createEngine(String[] engineOptions) {
+        NashornScriptEngineFactory factory = new NashornScriptEngineFactory();
+        ScriptEngine engine = factory.getScriptEngine(engineOptions, JavascriptInitializer.class.getClassLoader(), className -> false);
+
+        final Bindings bd = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+        bd.remove("load");
+        bd.remove("loadWithNewGlobal");
+        bd.remove("exit");
+        bd.remove("eval");
+        bd.remove("quit");
+
+        return engine;
+    }
+
+    /**
+     * Bounded pool of daemon threads. Once all the workers are busy and the queue is full, new evaluations are rejected.
+     */
+    private static ExecutorService createWorkers(int poolSize, int queueSize) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadPoolExecutor workers = new ThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            60,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            runnable -> {
+                final Thread thread = new Thread(runnable, "gio-javascript-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
+    }
+
+    /**
+     * @return the number of engines to create, 0 meaning one engine per event loop.
+     */
+    private static int engineShards() {
+        final int shards = getProperty(ENGINE_SHARDS_PROPERTY, Integer.class, 1);
+        return shards > 0 ? shards : VertxOptions.DEFAULT_EVENT_LOOP_POOL_SIZE;
+    }
+
+    /**
+     * @return the prepared code cache, null when it is disabled, which is the default, or its directory is not usable.
+     */
+    private static PersistentCodeCache codeCache() {
+        if (!getProperty(CODE_CACHE_ENABLED_PROPERTY, Boolean.class, false)) {
+            return null;
+        }
+
+        final Path directory = Path.of(
+            getProperty(
+                CODE_CACHE_DIRECTORY_PROPERTY,
+                String.class,
+                Path.of(System.getProperty("java.io.tmpdir"), "gravitee-policy-javascript", "code-cache").toString()
+            )
+        );
+        final PersistentCodeCache codeCache = new PersistentCodeCache(
+            directory,
+            PersistentCodeCache.pluginVersion(),
+            getProperty(CODE_CACHE_MAX_SIZE_PROPERTY, Long.class, DEFAULT_CODE_CACHE_MAX_SIZE)
+        );
+
+        try {
+            codeCache.prepare();
+            return codeCache;
+        } catch (RuntimeException e) {
+            log.warn("Unable to use the Javascript code cache directory {}, scripts will be compiled on each start", directory, e);
+            return null;
+        }
+    }
+
+    private static <T> T getProperty(String key, Class<T> type, T defaultValue) {
+        if (environment == null) {
+            return defaultValue;
+        }
+        return environment.getProperty(key, type, defaultValue);
+    }
+
     /**
      * @deprecated we should remove the use of httpclient inside javascript and exclusively rely on EndpointCalloutPolicy or dynamically add an EndpointInvoker in the script context.
      */
     private static void initHttpClient() {
         if (vertx != null) {
-            final HttpClientOptions options = new HttpClientOptions()
-                .setTrustAll(true)
-                .setVerifyHost(false)
-                .setKeepAlive(false)
-                .setTcpKeepAlive(false)
-                .setConnectTimeout(3000);
-
-            final PoolOptions poolOptions = new PoolOptions().setHttp1MaxSize(30);
+            final HttpClientOptions options = httpClientOptions();
+            final PoolOptions poolOptions = poolOptions();
 
             // TODO: check how to manage the proxy options.
             //        if ((useSystemProxy != null && useSystemProxy == Boolean.TRUE) || (useSystemProxy == null && this.isProxyConfigured)) {
@@ -111,4 +345,71 @@ public class JavascriptInitializer implements PolicyContext, PolicyContextProvid
             HTTP_CLIENT = vertx.createHttpClient(options, poolOptions);
         }
     }
+
+    /**
+     * Connections are closed after each call by default, as they have always been. Enabling keep alive lets them be reused, so
+     * that the calls sent by the scripts do not pay a TCP and TLS handshake each time. With HTTP/2 enabled, the protocol is
+     * negotiated with ALPN (or a clear text upgrade) and the client falls back to HTTP/1.1 when the server does not support it.
+     */
+    static HttpClientOptions httpClientOptions() {
+        final boolean http2 = getProperty(HTTP_CLIENT_HTTP2_ENABLED_PROPERTY, Boolean.class, false);
+
+        return new HttpClientOptions()
+            .setTrustAll(true)
+            .setVerifyHost(false)
+            .setKeepAlive(getProperty(HTTP_CLIENT_KEEP_ALIVE_PROPERTY, Boolean.class, false))
+            .setKeepAliveTimeout(
+                getProperty(HTTP_CLIENT_KEEP_ALIVE_TIMEOUT_PROPERTY, Integer.class, HttpClientOptions.DEFAULT_KEEP_ALIVE_TIMEOUT)
+            )
+            .setIdleTimeout(getProperty(HTTP_CLIENT_IDLE_TIMEOUT_PROPERTY, Integer.class, DEFAULT_HTTP_CLIENT_IDLE_TIMEOUT))
+            .setTcpKeepAlive(false)
+            .setConnectTimeout(getProperty(HTTP_CLIENT_CONNECT_TIMEOUT_PROPERTY, Integer.class, DEFAULT_HTTP_CLIENT_CONNECT_TIMEOUT))
+            .setPipelining(getProperty(HTTP_CLIENT_PIPELINING_PROPERTY, Boolean.class, false))
+            .setPipeliningLimit(
+                getProperty(HTTP_CLIENT_PIPELINING_LIMIT_PROPERTY, Integer.class, HttpClientOptions.DEFAULT_PIPELINING_LIMIT)
+            )
+            .setProtocolVersion(http2 ? HttpVersion.HTTP_2 : HttpVersion.HTTP_1_1)
+            .setUseAlpn(http2)
+            .setHttp2MultiplexingLimit(
+                getProperty(
+                    HTTP_CLIENT_HTTP2_MULTIPLEXING_LIMIT_PROPERTY,
+                    Integer.class,
+                    HttpClientOptions.DEFAULT_HTTP2_MULTIPLEXING_LIMIT
+                )
+            );
+    }
+
+    /**
+     * The cache is enabled by setting its maximum size, in bytes.
+     */
+    static HttpResponseCache httpClientCache() {
+        final long maxSize = getProperty(HTTP_CLIENT_CACHE_MAX_SIZE_PROPERTY, Long.class, 0L);
+        if (maxSize <= 0) {
+            return null;
+        }
+        return new HttpResponseCache(
+            maxSize,
+            getProperty(HTTP_CLIENT_CACHE_TTL_PROPERTY, Long.class, DEFAULT_HTTP_CLIENT_CACHE_TTL),
+            List.of(getProperty(HTTP_CLIENT_CACHE_KEY_HEADERS_PROPERTY, String.class, DEFAULT_HTTP_CLIENT_CACHE_KEY_HEADERS).split(","))
+        );
+    }
+
+    /**
+     * The maximum numbers of connections apply to each host. Once they are all in use, the calls wait in a queue, unbounded by
+     * default, see {@link #HTTP_CLIENT_METRICS} to size the pool.
+     */
+    static PoolOptions poolOptions() {
+        return new PoolOptions()
+            .setHttp1MaxSize(
+                getProperty(HTTP_CLIENT_MAX_CONNECTIONS_PER_HOST_PROPERTY, Integer.class, DEFAULT_HTTP_CLIENT_MAX_CONNECTIONS_PER_HOST)
+            )
+            .setHttp2MaxSize(
+                getProperty(
+                    HTTP_CLIENT_HTTP2_MAX_CONNECTIONS_PER_HOST_PROPERTY,
+                    Integer.class,
+                    DEFAULT_HTTP_CLIENT_HTTP2_MAX_CONNECTIONS_PER_HOST
+                )
+            )
+            .setMaxWaitQueueSize(getProperty(HTTP_CLIENT_MAX_WAIT_QUEUE_SIZE_PROPERTY, Integer.class, -1));
+    }
 }
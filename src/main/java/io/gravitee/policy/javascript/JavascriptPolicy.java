@@ -16,31 +16,66 @@
 package io.gravitee.policy.javascript;
 
 import static io.gravitee.common.http.HttpStatusCode.INTERNAL_SERVER_ERROR_500;
+import static io.gravitee.common.http.HttpStatusCode.REQUEST_ENTITY_TOO_LARGE_413;
+import static io.gravitee.common.http.HttpStatusCode.SERVICE_UNAVAILABLE_503;
+import static io.gravitee.policy.javascript.eval.ScriptContextBindings.REQUEST_VARIABLE_NAME;
+import static io.gravitee.policy.javascript.eval.ScriptContextBindings.RESPONSE_VARIABLE_NAME;
 import static io.gravitee.policy.javascript.eval.ScriptContextBindings.RESULT_VARIABLE_NAME;
+import static io.gravitee.policy.javascript.eval.ScriptContextFactory.createHttpMessageScope;
 import static io.gravitee.policy.javascript.eval.ScriptContextFactory.createHttpMessageScriptContext;
+import static io.gravitee.policy.javascript.eval.ScriptContextFactory.createHttpMessagesScriptContext;
 import static io.gravitee.policy.javascript.eval.ScriptContextFactory.createHttpPlainScriptContext;
+import static io.gravitee.policy.javascript.eval.ScriptContextFactory.release;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
 import io.gravitee.gateway.reactive.api.ExecutionFailure;
 import io.gravitee.gateway.reactive.api.context.http.HttpMessageExecutionContext;
 import io.gravitee.gateway.reactive.api.context.http.HttpPlainExecutionContext;
 import io.gravitee.gateway.reactive.api.message.Message;
 import io.gravitee.gateway.reactive.api.policy.http.HttpPolicy;
 import io.gravitee.policy.javascript.PolicyResult.State;
+import io.gravitee.policy.javascript.configuration.ContentMode;
 import io.gravitee.policy.javascript.configuration.JavascriptPolicyConfiguration;
+import io.gravitee.policy.javascript.configuration.MaxContentSizeAction;
+import io.gravitee.policy.javascript.configuration.MessageOrdering;
+import io.gravitee.policy.javascript.eval.ScriptContextFactory.MessageScope;
+import io.gravitee.policy.javascript.eval.ScriptTimeoutException;
+import io.gravitee.policy.javascript.model.js.JsContent;
+import io.gravitee.policy.javascript.model.js.http.JsHttpRequest;
+import io.gravitee.policy.javascript.model.js.http.JsHttpResponse;
+import io.gravitee.policy.javascript.model.js.message.JsMessage;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.vertx.core.Vertx;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import javax.script.ScriptContext;
 import lombok.CustomLog;
+import org.apache.commons.lang3.math.NumberUtils;
 
 @CustomLog
 public class JavascriptPolicy extends io.gravitee.policy.v3.javascript.JavascriptPolicy implements HttpPolicy {
 
+    private static final String ON_CHUNK_FUNCTION = "onChunk";
+    private static final String ON_END_FUNCTION = "onEnd";
+    private static final LongAdder DROPPED_MESSAGES = new LongAdder();
+    /**
+     * Maximum number of batches closed while the script is still evaluating a previous one. The message flow fails beyond.
+     */
+    private static final int MAX_PENDING_BATCHES = 1000;
+
     /**
      * @see JavascriptPolicyConfiguration#getScripts()
      */
@@ -51,6 +86,13 @@ public class JavascriptPolicy extends io.gravitee.policy.v3.javascript.Javascrip
         scriptFlowable = Flowable.fromIterable(configuration.getScripts());
     }
 
+    /**
+     * @return the number of messages dropped by the scripts, see {@link State#DROP}.
+     */
+    public static long droppedMessages() {
+        return DROPPED_MESSAGES.sum();
+    }
+
     @Override
     public String id() {
         return "policy-javascript";
@@ -70,16 +112,23 @@ public class JavascriptPolicy extends io.gravitee.policy.v3.javascript.Javascrip
             (isNotBlank(configuration.getScript()) && configuration.isReadContent()) ||
             isNotBlank(configuration.getOnRequestContentScript())
         ) {
+            if (configuration.getContentMode() == ContentMode.STREAMING) {
+                var script = isNotBlank(configuration.getScript()) ? configuration.getScript() : configuration.getOnRequestContentScript();
+                overrideContentLength(ctx.request().headers());
+                return ctx.request().onChunks(chunks -> onHttpChunks(ctx, script, chunks));
+            }
+
             Consumer<Buffer> onContentOverride = overridenContentBuffer -> ctx.request().contentLength(overridenContentBuffer.length());
-            return ctx
-                .request()
-                .onBody(requestBodyBuffer ->
-                    requestBodyBuffer
-                        .defaultIfEmpty(Buffer.buffer())
-                        .flatMapMaybe(buffer ->
-                            onHttpContent(ctx, buffer, createHttpPlainScriptContext(ctx, buffer, null), onContentOverride)
-                        )
-                );
+            Function<Buffer, Maybe<Buffer>> onContent = buffer ->
+                onHttpContent(ctx, buffer, createHttpPlainScriptContext(ctx, buffer, null), onContentOverride);
+
+            if (configuration.getMaxContentSize() > 0) {
+                if (exceedsMaxContentSize(ctx.request().headers())) {
+                    return onMaxContentSizeExceeded(ctx, REQUEST_ENTITY_TOO_LARGE_413);
+                }
+                return ctx.request().onChunks(chunks -> onLimitedContent(ctx, chunks, REQUEST_ENTITY_TOO_LARGE_413, onContent));
+            }
+            return ctx.request().onBody(requestBodyBuffer -> requestBodyBuffer.defaultIfEmpty(Buffer.buffer()).flatMapMaybe(onContent));
         }
         if (isNotBlank(configuration.getScript())) {
             return runScript(ctx, configuration.getScript());
@@ -101,16 +150,23 @@ public class JavascriptPolicy extends io.gravitee.policy.v3.javascript.Javascrip
             (isNotBlank(configuration.getScript()) && configuration.isReadContent()) ||
             isNotBlank(configuration.getOnResponseContentScript())
         ) {
+            if (configuration.getContentMode() == ContentMode.STREAMING) {
+                var script = isNotBlank(configuration.getScript()) ? configuration.getScript() : configuration.getOnResponseContentScript();
+                overrideContentLength(ctx.response().headers());
+                return ctx.response().onChunks(chunks -> onHttpChunks(ctx, script, chunks));
+            }
+
             Consumer<Buffer> onContentOverride = overridenContentBuffer -> ctx.response().contentLength(overridenContentBuffer.length());
-            return ctx
-                .response()
-                .onBody(responseBodyBuffer ->
-                    responseBodyBuffer
-                        .defaultIfEmpty(Buffer.buffer())
-                        .flatMapMaybe(buffer ->
-                            onHttpContent(ctx, buffer, createHttpPlainScriptContext(ctx, null, buffer), onContentOverride)
-                        )
-                );
+            Function<Buffer, Maybe<Buffer>> onContent = buffer ->
+                onHttpContent(ctx, buffer, createHttpPlainScriptContext(ctx, null, buffer), onContentOverride);
+
+            if (configuration.getMaxContentSize() > 0) {
+                if (exceedsMaxContentSize(ctx.response().headers())) {
+                    return onMaxContentSizeExceeded(ctx, INTERNAL_SERVER_ERROR_500);
+                }
+                return ctx.response().onChunks(chunks -> onLimitedContent(ctx, chunks, INTERNAL_SERVER_ERROR_500, onContent));
+            }
+            return ctx.response().onBody(responseBodyBuffer -> responseBodyBuffer.defaultIfEmpty(Buffer.buffer()).flatMapMaybe(onContent));
         }
         if (isNotBlank(configuration.getScript())) {
             return runScript(ctx, configuration.getScript());
@@ -120,30 +176,47 @@ public class JavascriptPolicy extends io.gravitee.policy.v3.javascript.Javascrip
 
     @Override
     public Completable onMessageRequest(final HttpMessageExecutionContext ctx) {
-        return ctx.request().onMessage(message -> runScript(ctx, message));
+        var scope = createHttpMessageScope(ctx);
+        if (configuration.isMessageBatchEnabled()) {
+            return ctx.request().onMessages(messages -> onMessageBatches(ctx, scope, messages));
+        }
+        if (configuration.getMessageConcurrency() > 1) {
+            return ctx.request().onMessages(messages -> onConcurrentMessages(ctx, scope, messages));
+        }
+        return ctx.request().onMessage(message -> runScript(ctx, scope, message));
     }
 
     @Override
     public Completable onMessageResponse(final HttpMessageExecutionContext ctx) {
-        return ctx.response().onMessage(message -> runScript(ctx, message));
+        var scope = createHttpMessageScope(ctx);
+        if (configuration.isMessageBatchEnabled()) {
+            return ctx.response().onMessages(messages -> onMessageBatches(ctx, scope, messages));
+        }
+        if (configuration.getMessageConcurrency() > 1) {
+            return ctx.response().onMessages(messages -> onConcurrentMessages(ctx, scope, messages));
+        }
+        return ctx.response().onMessage(message -> runScript(ctx, scope, message));
     }
 
     private Completable runScript(final HttpPlainExecutionContext ctx, String script) {
-        var scriptContext = createHttpPlainScriptContext(ctx);
+        return Completable.defer(() -> {
+            var scriptContext = createHttpPlainScriptContext(ctx);
 
-        return scriptEvaluator
-            .evalRx(script, scriptContext)
-            .ignoreElement()
-            .onErrorResumeNext(e -> {
-                ctx.withLogger(log).error("An error occurred while executing Javascript script", e);
-                return ctx.interruptWith(createExecutionFailureFromThrowable(e));
-            })
-            .andThen(
-                Completable.defer(() -> {
-                    var result = (PolicyResult) scriptContext.getAttribute(RESULT_VARIABLE_NAME);
-                    return handleResult(ctx, result);
+            return scriptEvaluator
+                .evalRx(script, scriptContext)
+                .ignoreElement()
+                .onErrorResumeNext(e -> {
+                    ctx.withLogger(log).error("An error occurred while executing Javascript script", e);
+                    return ctx.interruptWith(createExecutionFailureFromThrowable(e));
                 })
-            );
+                .andThen(
+                    Completable.defer(() -> {
+                        var result = (PolicyResult) scriptContext.getAttribute(RESULT_VARIABLE_NAME);
+                        return handleResult(ctx, result);
+                    })
+                )
+                .doFinally(() -> release(scriptContext));
+        });
     }
 
     private static Completable handleResult(HttpPlainExecutionContext ctx, PolicyResult result) {
@@ -157,6 +230,20 @@ public class JavascriptPolicy extends io.gravitee.policy.v3.javascript.Javascrip
     }
 
     private static ExecutionFailure createExecutionFailureFromThrowable(Throwable e) {
+        if (e instanceof RejectedExecutionException) {
+            return new ExecutionFailure(SERVICE_UNAVAILABLE_503)
+                .key("JAVASCRIPT_EXECUTION_REJECTED")
+                .message("Service Unavailable")
+                .cause(e);
+        }
+
+        if (e instanceof ScriptTimeoutException) {
+            return new ExecutionFailure(INTERNAL_SERVER_ERROR_500)
+                .key("JAVASCRIPT_EXECUTION_TIMEOUT")
+                .message("Internal Server Error")
+                .cause(e);
+        }
+
         return new ExecutionFailure(INTERNAL_SERVER_ERROR_500)
             .key("JAVASCRIPT_EXECUTION_FAILURE")
             .parameters(Map.of("exception", e))
@@ -164,6 +251,57 @@ public class JavascriptPolicy extends io.gravitee.policy.v3.javascript.Javascrip
             .cause(e);
     }
 
+    /**
+     * Aggregates the body while it does not exceed the maximum content size, then runs the scripts on it. A larger body interrupts the
+     * execution as soon as the limit is exceeded, or is passed through without running the scripts.
+     */
+    private Flowable<Buffer> onLimitedContent(
+        HttpPlainExecutionContext ctx,
+        Flowable<Buffer> chunks,
+        int status,
+        Function<Buffer, Maybe<Buffer>> onContent
+    ) {
+        return Flowable.defer(() -> {
+            var aggregator = new ContentAggregator(configuration.getMaxContentSize());
+
+            return chunks
+                .concatMap(chunk -> {
+                    if (aggregator.isExceeded()) {
+                        return Flowable.just(chunk);
+                    }
+                    if (aggregator.append(chunk)) {
+                        return Flowable.empty();
+                    }
+                    if (configuration.getMaxContentSizeAction() == MaxContentSizeAction.PASS_THROUGH) {
+                        return Flowable.fromIterable(aggregator.release());
+                    }
+                    aggregator.release();
+                    return ctx.interruptBodyWith(contentTooLarge(status)).toFlowable();
+                })
+                .concatWith(Maybe.defer(() -> aggregator.isExceeded() ? Maybe.empty() : onContent.apply(aggregator.content())));
+        });
+    }
+
+    /**
+     * Rejects a body declaring a length larger than the maximum content size before reading it.
+     */
+    private boolean exceedsMaxContentSize(HttpHeaders headers) {
+        return NumberUtils.toLong(headers.get(HttpHeaderNames.CONTENT_LENGTH), -1) > configuration.getMaxContentSize();
+    }
+
+    private Completable onMaxContentSizeExceeded(HttpPlainExecutionContext ctx, int status) {
+        if (configuration.getMaxContentSizeAction() == MaxContentSizeAction.PASS_THROUGH) {
+            return Completable.complete();
+        }
+        return ctx.interruptWith(contentTooLarge(status));
+    }
+
+    private ExecutionFailure contentTooLarge(int status) {
+        return new ExecutionFailure(status)
+            .key("JAVASCRIPT_CONTENT_TOO_LARGE")
+            .message("Content exceeds the maximum size of " + configuration.getMaxContentSize() + " bytes");
+    }
+
     private Maybe<Buffer> onHttpContent(
         HttpPlainExecutionContext ctx,
         Buffer bodyBuffer,
@@ -171,14 +309,20 @@ public class JavascriptPolicy extends io.gravitee.policy.v3.javascript.Javascrip
         Consumer<Buffer> onContentOverride
     ) {
         return scriptFlowable
-            .concatMapMaybe(script -> runContentAwareScript(ctx, scriptContext, script))
+            .concatMapMaybe(script -> runContentAwareScript(ctx, bodyBuffer, scriptContext, script))
             .lastElement()
-            .filter(jsBuffer -> configuration.isOverrideContent())
+            .filter(jsBuffer -> configuration.isOverrideContent() && jsBuffer != bodyBuffer)
             .doOnSuccess(onContentOverride::accept)
-            .switchIfEmpty(Maybe.just(bodyBuffer));
+            .switchIfEmpty(Maybe.just(bodyBuffer))
+            .doFinally(() -> release(scriptContext));
     }
 
-    private Maybe<Buffer> runContentAwareScript(HttpPlainExecutionContext ctx, ScriptContext scriptContext, String script) {
+    private Maybe<Buffer> runContentAwareScript(
+        HttpPlainExecutionContext ctx,
+        Buffer bodyBuffer,
+        ScriptContext scriptContext,
+        String script
+    ) {
         return scriptEvaluator
             .evalRx(script, scriptContext)
             .onErrorResumeNext(e -> {
@@ -187,23 +331,141 @@ public class JavascriptPolicy extends io.gravitee.policy.v3.javascript.Javascrip
             })
             .flatMap(output -> {
                 var result = (PolicyResult) scriptContext.getAttribute(RESULT_VARIABLE_NAME);
-                return handleResult(ctx, output, result);
+                return handleResult(ctx, bodyBuffer, scriptContext, output, result);
             });
     }
 
-    private static Maybe<Buffer> handleResult(HttpPlainExecutionContext ctx, Object output, PolicyResult result) {
+    private static Maybe<Buffer> handleResult(
+        HttpPlainExecutionContext ctx,
+        Buffer bodyBuffer,
+        ScriptContext scriptContext,
+        Object output,
+        PolicyResult result
+    ) {
+        if (result.getState() == State.FAILURE) {
+            return ctx.interruptBodyWith(
+                new ExecutionFailure(result.getCode()).key(result.getKey()).message(result.getError()).contentType(result.getContentType())
+            );
+        }
+
+        if (isContent(scriptContext, REQUEST_VARIABLE_NAME, output) || isContent(scriptContext, RESPONSE_VARIABLE_NAME, output)) {
+            return Maybe.just(bodyBuffer);
+        }
+        return Maybe.just(toBuffer(output));
+    }
+
+    /**
+     * @return whether the script returned the content it has been given, untouched.
+     */
+    private static boolean isContent(ScriptContext scriptContext, String name, Object output) {
+        var binding = scriptContext.getAttribute(name);
+        if (binding instanceof JsHttpRequest request) {
+            return request.isContent(output);
+        }
+        return binding instanceof JsHttpResponse response && response.isContent(output);
+    }
+
+    /**
+     * Only the strings are encoded, the binary outputs are wrapped or copied as is.
+     */
+    private static Buffer toBuffer(Object output) {
+        if (output instanceof Buffer buffer) {
+            return buffer;
+        }
+        if (output instanceof byte[] bytes) {
+            return Buffer.buffer(bytes);
+        }
+        if (output instanceof JsContent content) {
+            return content.toBuffer();
+        }
+        return Buffer.buffer(output.toString());
+    }
+
+    /**
+     * Streams the body through the <code>onChunk</code> and <code>onEnd</code> functions declared by the script, which is evaluated once
+     * before the first chunk. Only the chunk being processed is held in memory.
+     */
+    private Flowable<Buffer> onHttpChunks(HttpPlainExecutionContext ctx, String script, Flowable<Buffer> chunks) {
+        return Flowable.defer(() -> {
+            var scriptContext = createHttpPlainScriptContext(ctx);
+            var decoder = new Utf8ChunkDecoder();
+
+            return scriptEvaluator
+                .evalRx(script, scriptContext)
+                .ignoreElement()
+                .onErrorResumeNext(e -> {
+                    ctx.withLogger(log).error("An error occurred while executing Javascript script", e);
+                    return ctx.interruptBodyWith(createExecutionFailureFromThrowable(e)).ignoreElement();
+                })
+                .andThen(Maybe.defer(() -> handleChunkResult(ctx, scriptContext, null, null)))
+                .toFlowable()
+                .concatWith(
+                    chunks.concatMapMaybe(chunk -> runChunkScript(ctx, scriptContext, chunk, ON_CHUNK_FUNCTION, decoder.decode(chunk)))
+                )
+                .concatWith(Maybe.defer(() -> onLastChunk(ctx, scriptContext, decoder.finish())))
+                .concatWith(Maybe.defer(() -> runChunkScript(ctx, scriptContext, null, ON_END_FUNCTION)))
+                .doFinally(() -> release(scriptContext));
+        });
+    }
+
+    /**
+     * A body ending with a truncated character gets a last <code>onChunk</code> call with its replacement character. Its bytes have
+     * already been emitted with the previous chunk, so only the output of the function is emitted, when overriding the content.
+     */
+    private Maybe<Buffer> onLastChunk(HttpPlainExecutionContext ctx, ScriptContext scriptContext, String remainder) {
+        return remainder.isEmpty() ? Maybe.empty() : runChunkScript(ctx, scriptContext, null, ON_CHUNK_FUNCTION, remainder);
+    }
+
+    private Maybe<Buffer> runChunkScript(
+        HttpPlainExecutionContext ctx,
+        ScriptContext scriptContext,
+        Buffer chunk,
+        String function,
+        Object... args
+    ) {
+        var output = new AtomicReference<>();
+
+        return scriptEvaluator
+            .invokeRx(scriptContext, function, args)
+            .doOnSuccess(output::set)
+            .ignoreElement()
+            .onErrorResumeNext(e -> {
+                ctx.withLogger(log).error("An error occurred while executing Javascript script", e);
+                return ctx.interruptBodyWith(createExecutionFailureFromThrowable(e)).ignoreElement();
+            })
+            .andThen(Maybe.defer(() -> handleChunkResult(ctx, scriptContext, output.get(), chunk)));
+    }
+
+    /**
+     * @return the output of the function when overriding the content, else the chunk unchanged.
+     */
+    private Maybe<Buffer> handleChunkResult(HttpPlainExecutionContext ctx, ScriptContext scriptContext, Object output, Buffer chunk) {
+        var result = (PolicyResult) scriptContext.getAttribute(RESULT_VARIABLE_NAME);
         if (result.getState() == State.FAILURE) {
             return ctx.interruptBodyWith(
                 new ExecutionFailure(result.getCode()).key(result.getKey()).message(result.getError()).contentType(result.getContentType())
             );
         }
 
-        return Maybe.just(Buffer.buffer(output.toString()));
+        if (output != null && configuration.isOverrideContent()) {
+            return Maybe.just(toBuffer(output));
+        }
+        return chunk != null ? Maybe.just(chunk) : Maybe.empty();
+    }
+
+    /**
+     * The length of a streamed content is unknown until its last chunk has been transformed.
+     */
+    private void overrideContentLength(HttpHeaders headers) {
+        if (configuration.isOverrideContent()) {
+            headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+            headers.set(HttpHeaderNames.TRANSFER_ENCODING, "chunked");
+        }
     }
 
-    private Maybe<Message> runScript(final HttpMessageExecutionContext ctx, Message message) {
+    private Maybe<Message> runScript(final HttpMessageExecutionContext ctx, MessageScope scope, Message message) {
         var script = configuration.getScript();
-        var scriptContext = createHttpMessageScriptContext(ctx, message);
+        var scriptContext = createHttpMessageScriptContext(scope, message);
 
         return scriptEvaluator
             .evalRx(script, scriptContext)
@@ -211,18 +473,120 @@ public class JavascriptPolicy extends io.gravitee.policy.v3.javascript.Javascrip
             .flatMap(output -> {
                 var result = (PolicyResult) scriptContext.getAttribute(RESULT_VARIABLE_NAME);
                 return handleResult(ctx, message, output, result);
-            });
+            })
+            .doFinally(() -> release(scriptContext));
+    }
+
+    /**
+     * Evaluates up to {@link JavascriptPolicyConfiguration#getMessageConcurrency()} messages at once. The messages are emitted in the
+     * order they have been received, or only in the order of the messages sharing the same key, see {@link MessageOrdering}.
+     */
+    private Flowable<Message> onConcurrentMessages(HttpMessageExecutionContext ctx, MessageScope scope, Flowable<Message> messages) {
+        var concurrency = configuration.getMessageConcurrency();
+        if (configuration.getMessageOrdering() == MessageOrdering.ORIGINAL) {
+            return messages.concatMapEager(message -> runScript(ctx, scope, message).toFlowable(), concurrency, 1);
+        }
+
+        return Flowable.defer(() -> {
+            var sequencer = new KeySequencer();
+            return messages.flatMapMaybe(
+                message -> sequencer.sequence(orderingKey(message), Maybe.defer(() -> runScript(ctx, scope, message))),
+                false,
+                concurrency
+            );
+        });
     }
 
+    /**
+     * @return the key of the messages to keep in order, null for a message which may be emitted out of order.
+     */
+    private Object orderingKey(Message message) {
+        if (configuration.getMessageOrdering() == MessageOrdering.CORRELATION_ID) {
+            return message.correlationId();
+        }
+        if (isBlank(configuration.getMessageOrderingHeader()) || message.headers() == null) {
+            return null;
+        }
+        return message.headers().get(configuration.getMessageOrderingHeader());
+    }
+
+    /**
+     * Groups the messages in batches of up to {@link JavascriptPolicyConfiguration#getMessageBatchSize()} messages, waiting at most
+     * {@link JavascriptPolicyConfiguration#getMessageBatchWindow()} milliseconds for a batch to be full, and evaluates the script once
+     * per batch. The batches are evaluated one after the other, so that the messages keep their order.
+     *
+     * The timed buffer does not wait for the downstream requests, the batches it closes while the script is slower than the window are
+     * kept, up to {@link #MAX_PENDING_BATCHES}.
+     */
+    private Flowable<Message> onMessageBatches(HttpMessageExecutionContext ctx, MessageScope scope, Flowable<Message> messages) {
+        return Flowable.defer(() -> {
+            var size = configuration.getMessageBatchSize() > 0 ? configuration.getMessageBatchSize() : Integer.MAX_VALUE;
+            if (configuration.getMessageBatchWindow() <= 0) {
+                return messages.buffer(size).concatMap(batch -> runScript(ctx, scope, batch));
+            }
+
+            // The batches closed by the timer are emitted on the Vert.x context the messages flow on.
+            var context = Vertx.currentContext();
+            var scheduler = context != null
+                ? Schedulers.from(command -> context.runOnContext(ignored -> command.run()))
+                : Schedulers.computation();
+            return messages
+                .buffer(configuration.getMessageBatchWindow(), TimeUnit.MILLISECONDS, scheduler, size)
+                .filter(batch -> !batch.isEmpty())
+                .onBackpressureBuffer(MAX_PENDING_BATCHES)
+                .concatMap(batch -> runScript(ctx, scope, batch));
+        });
+    }
+
+    private Flowable<Message> runScript(final HttpMessageExecutionContext ctx, MessageScope scope, List<Message> batch) {
+        var script = configuration.getScript();
+        var jsMessages = batch.stream().map(JsMessage::new).toList();
+        var scriptContext = createHttpMessagesScriptContext(scope, jsMessages);
+
+        return scriptEvaluator
+            .evalAllRx(script, scriptContext)
+            .onErrorResumeNext(e -> ctx.interruptMessageWith(createExecutionFailureFromThrowable(e)).ignoreElement().toMaybe())
+            .flatMapPublisher(outputs -> {
+                var result = (PolicyResult) scriptContext.getAttribute(RESULT_VARIABLE_NAME);
+                if (result.getState() == State.FAILURE) {
+                    return ctx
+                        .interruptMessageWith(
+                            new ExecutionFailure(result.getCode())
+                                .key(result.getKey())
+                                .message(result.getError())
+                                .contentType(result.getContentType())
+                        )
+                        .toFlowable();
+                }
+                return Flowable.range(0, batch.size()).concatMapMaybe(i ->
+                    handleResult(ctx, batch.get(i), i < outputs.size() ? outputs.get(i) : null, jsMessages.get(i).getResult())
+                );
+            })
+            .doFinally(() -> release(scriptContext));
+    }
+
+    /**
+     * A message dropped by the script is acknowledged, as if it had gone through the whole flow, and filtered out without failure.
+     *
+     * @param output the new content of the message, null to keep it unchanged.
+     */
     private Maybe<Message> handleResult(HttpMessageExecutionContext ctx, Message message, Object output, PolicyResult result) {
+        if (result.getState() == State.DROP) {
+            DROPPED_MESSAGES.increment();
+            message.ack();
+            return Maybe.empty();
+        }
         if (result.getState() == State.FAILURE) {
             return ctx.interruptMessageWith(
                 new ExecutionFailure(result.getCode()).key(result.getKey()).message(result.getError()).contentType(result.getContentType())
             );
         }
 
-        if (configuration.isOverrideContent()) {
-            message.content(Buffer.buffer(output.toString()));
+        if (configuration.isOverrideContent() && output != null) {
+            var content = toBuffer(output);
+            if (content != message.content()) {
+                message.content(content);
+            }
         }
 
         return Maybe.just(message);
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.subjects.CompletableSubject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chains the evaluations sharing the same key, each of them being subscribed once the previous one has terminated, while the
+ * evaluations of different keys run concurrently. An evaluation without key is not chained.
+ *
+ * @author GraviteeSource Team
+ */
+class KeySequencer {
+
+    /**
+     * Completes when the last evaluation chained for each key terminates, the key being removed unless another evaluation has been
+     * chained since.
+     */
+    private final Map<Object, Completable> tails = new ConcurrentHashMap<>();
+
+    <T> Maybe<T> sequence(Object key, Maybe<T> evaluation) {
+        if (key == null) {
+            return evaluation;
+        }
+
+        var terminated = CompletableSubject.create();
+        var previous = tails.put(key, terminated);
+        var chained = previous != null ? previous.andThen(evaluation) : evaluation;
+        return chained.doFinally(() -> {
+            tails.remove(key, terminated);
+            terminated.onComplete();
+        });
+    }
+}
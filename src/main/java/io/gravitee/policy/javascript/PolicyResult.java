@@ -76,5 +76,11 @@ public class PolicyResult {
     public enum State {
         SUCCESS,
         FAILURE,
+
+        /**
+         * The message is acknowledged and removed from the flow, without failure. Only supported by the message scripts, it has no
+         * effect on HTTP requests and responses.
+         */
+        DROP,
     }
 }
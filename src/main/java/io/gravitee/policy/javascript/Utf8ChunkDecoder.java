@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the chunks of a body as UTF-8 text. The bytes of a character split across two chunks are kept until the next chunk, so
+ * that the character is decoded once complete. The bytes still kept at the end of the body are decoded by {@link #finish()}.
+ *
+ * @author GraviteeSource Team
+ */
+class Utf8ChunkDecoder {
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private byte[] pending = new byte[0];
+
+    String decode(Buffer chunk) {
+        final byte[] bytes = chunk.getBytes();
+        final ByteBuffer input = ByteBuffer.allocate(pending.length + bytes.length).put(pending).put(bytes).flip();
+        final CharBuffer output = CharBuffer.allocate(input.remaining());
+
+        decoder.decode(input, output, false);
+
+        pending = new byte[input.remaining()];
+        input.get(pending);
+        return output.flip().toString();
+    }
+
+    /**
+     * @return the text of the bytes kept from the last chunk, a replacement character for each truncated character, empty when the
+     * body ends with a complete character.
+     */
+    String finish() {
+        final ByteBuffer input = ByteBuffer.wrap(pending);
+        final CharBuffer output = CharBuffer.allocate(pending.length);
+
+        decoder.decode(input, output, true);
+        decoder.flush(output);
+
+        pending = new byte[0];
+        return output.flip().toString();
+    }
+}
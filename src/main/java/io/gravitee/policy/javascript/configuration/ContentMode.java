@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+/**
+ * How the content script of a v4 HTTP API accesses the body of the request or the response.
+ *
+ * @author GraviteeSource Team
+ */
+public enum ContentMode {
+    /**
+     * The whole body is loaded in memory and exposed as <code>request.content</code> or <code>response.content</code>.
+     */
+    BUFFERED,
+
+    /**
+     * The body is streamed through the <code>onChunk(chunk)</code> and <code>onEnd()</code> functions declared by the script, without
+     * being loaded in memory.
+     */
+    STREAMING,
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+/**
+ * Where the scripts of a v4 API are evaluated.
+ *
+ * @author GraviteeSource Team
+ */
+public enum ExecutionMode {
+    /**
+     * On the thread handling the request, usually the event loop. Suited to short scripts. The messages evaluated concurrently are
+     * evaluated on the workers anyway.
+     */
+    INLINE,
+
+    /**
+     * On the bounded pool of Javascript workers, the request processing being resumed on its original context once the script is done.
+     * Suited to slow scripts, or scripts waiting for HTTP calls.
+     */
+    WORKER,
+}
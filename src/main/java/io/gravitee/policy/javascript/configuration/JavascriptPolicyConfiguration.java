@@ -42,6 +42,51 @@ public class JavascriptPolicyConfiguration implements PolicyConfiguration {
 
     private String onRequestContentScript;
 
+    private ExecutionMode executionMode = ExecutionMode.INLINE;
+
+    private ContentMode contentMode = ContentMode.BUFFERED;
+
+    /**
+     * Maximum time, in milliseconds, a script may run before being interrupted. 0 means no limit.
+     */
+    private long maxExecutionTime;
+
+    /**
+     * Maximum time, in milliseconds, an HTTP call of a script may take, also used for the calls without their own timeout. 0 means
+     * no limit.
+     */
+    private long httpCallTimeout;
+
+    /**
+     * Maximum size, in bytes, of a body loaded in memory for a content script. 0 means no limit.
+     */
+    private long maxContentSize;
+
+    private MaxContentSizeAction maxContentSizeAction = MaxContentSizeAction.FAIL;
+
+    /**
+     * Maximum number of messages evaluated by a single execution of the script. 0 means no limit.
+     */
+    private int messageBatchSize;
+
+    /**
+     * Maximum time, in milliseconds, messages wait for their batch to be full. 0 means no time limit.
+     */
+    private long messageBatchWindow;
+
+    /**
+     * Maximum number of messages evaluated at once, on the Javascript workers whatever the {@link ExecutionMode}. 0 and 1 evaluate the
+     * messages one after the other.
+     */
+    private int messageConcurrency = 1;
+
+    private MessageOrdering messageOrdering = MessageOrdering.ORIGINAL;
+
+    /**
+     * Header whose value orders the messages with {@link MessageOrdering#HEADER}.
+     */
+    private String messageOrderingHeader;
+
     public boolean isReadContent() {
         return readContent;
     }
@@ -108,6 +153,101 @@ public class JavascriptPolicyConfiguration implements PolicyConfiguration {
         this.onRequestContentScript = onRequestContentScript;
     }
 
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public ContentMode getContentMode() {
+        return contentMode;
+    }
+
+    public void setContentMode(ContentMode contentMode) {
+        this.contentMode = contentMode;
+    }
+
+    public long getMaxExecutionTime() {
+        return maxExecutionTime;
+    }
+
+    public void setMaxExecutionTime(long maxExecutionTime) {
+        this.maxExecutionTime = maxExecutionTime;
+    }
+
+    public long getHttpCallTimeout() {
+        return httpCallTimeout;
+    }
+
+    public void setHttpCallTimeout(long httpCallTimeout) {
+        this.httpCallTimeout = httpCallTimeout;
+    }
+
+    public long getMaxContentSize() {
+        return maxContentSize;
+    }
+
+    public void setMaxContentSize(long maxContentSize) {
+        this.maxContentSize = maxContentSize;
+    }
+
+    public MaxContentSizeAction getMaxContentSizeAction() {
+        return maxContentSizeAction;
+    }
+
+    public void setMaxContentSizeAction(MaxContentSizeAction maxContentSizeAction) {
+        this.maxContentSizeAction = maxContentSizeAction;
+    }
+
+    public int getMessageBatchSize() {
+        return messageBatchSize;
+    }
+
+    public void setMessageBatchSize(int messageBatchSize) {
+        this.messageBatchSize = messageBatchSize;
+    }
+
+    public long getMessageBatchWindow() {
+        return messageBatchWindow;
+    }
+
+    public void setMessageBatchWindow(long messageBatchWindow) {
+        this.messageBatchWindow = messageBatchWindow;
+    }
+
+    public int getMessageConcurrency() {
+        return messageConcurrency;
+    }
+
+    public void setMessageConcurrency(int messageConcurrency) {
+        this.messageConcurrency = messageConcurrency;
+    }
+
+    public MessageOrdering getMessageOrdering() {
+        return messageOrdering;
+    }
+
+    public void setMessageOrdering(MessageOrdering messageOrdering) {
+        this.messageOrdering = messageOrdering;
+    }
+
+    public String getMessageOrderingHeader() {
+        return messageOrderingHeader;
+    }
+
+    public void setMessageOrderingHeader(String messageOrderingHeader) {
+        this.messageOrderingHeader = messageOrderingHeader;
+    }
+
+    /**
+     * @return whether the messages are evaluated in batches rather than one by one.
+     */
+    public boolean isMessageBatchEnabled() {
+        return messageBatchSize > 0 || messageBatchWindow > 0;
+    }
+
     /**
      * This getter is used for backward compatibility.
      *
@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+/**
+ * What happens to a body larger than {@link JavascriptPolicyConfiguration#getMaxContentSize()}.
+ *
+ * @author GraviteeSource Team
+ */
+public enum MaxContentSizeAction {
+    /**
+     * The execution is interrupted with a <code>JAVASCRIPT_CONTENT_TOO_LARGE</code> failure, as soon as the limit is exceeded.
+     */
+    FAIL,
+
+    /**
+     * The body is passed through unchanged, without running the content script.
+     */
+    PASS_THROUGH,
+}
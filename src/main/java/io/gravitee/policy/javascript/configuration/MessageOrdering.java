@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+/**
+ * Order kept between the messages evaluated concurrently, see {@link JavascriptPolicyConfiguration#getMessageConcurrency()}.
+ *
+ * @author GraviteeSource Team
+ */
+public enum MessageOrdering {
+    /**
+     * The messages are emitted in the order they have been received, a message waiting for the evaluation of the previous ones.
+     */
+    ORIGINAL,
+
+    /**
+     * The messages sharing the same correlation ID are evaluated and emitted in the order they have been received, the others may
+     * be emitted out of order.
+     */
+    CORRELATION_ID,
+
+    /**
+     * The messages sharing the same value of the {@link JavascriptPolicyConfiguration#getMessageOrderingHeader()} header are evaluated
+     * and emitted in the order they have been received, the others may be emitted out of order.
+     */
+    HEADER,
+}
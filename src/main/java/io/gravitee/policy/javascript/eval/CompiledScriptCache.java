@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+/**
+ * Bounded cache of {@link CompiledScript}s, keyed by the SHA-256 digest of the script source and the engine that compiled it.
+ *
+ * The same script deployed on several APIs is parsed only once per engine. Once {@code maxSize} entries are cached, the least
+ * recently used one is evicted.
+ *
+ * @author GraviteeSource Team
+ */
+public class CompiledScriptCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final int maxSize;
+    private final Map<Key, CompiledScript> scripts;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CompiledScriptCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public CompiledScriptCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Compiled script cache size must be strictly positive");
+        }
+        this.maxSize = maxSize;
+        this.scripts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompiledScript> eldest) {
+                if (size() > CompiledScriptCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled form of the script for the given engine, compiling it on the first call.
+     *
+     * Compilation happens outside the cache lock: two threads missing on the same script at the same time may both compile it,
+     * in which case the first one stored is kept.
+     */
+    public CompiledScript get(ScriptEngine engine, String script) throws ScriptException {
+        if (!(engine instanceof Compilable compilable)) {
+            throw new IllegalArgumentException("Script engine " + engine.getClass().getName() + " does not support compilation");
+        }
+
+        final Key key = new Key(engine, digest(script));
+        CompiledScript compiled;
+
+        synchronized (scripts) {
+            compiled = scripts.get(key);
+        }
+
+        if (compiled != null) {
+            hits.increment();
+            return compiled;
+        }
+
+        misses.increment();
+        compiled = compilable.compile(script);
+
+        synchronized (scripts) {
+            final CompiledScript existing = scripts.putIfAbsent(key, compiled);
+            return existing != null ? existing : compiled;
+        }
+    }
+
+    public void clear() {
+        synchronized (scripts) {
+            scripts.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (scripts) {
+            return scripts.size();
+        }
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    static String digest(String script) {
+        try {
+            final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(messageDigest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every Java platform.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Key(ScriptEngine engine, String digest) {}
+}
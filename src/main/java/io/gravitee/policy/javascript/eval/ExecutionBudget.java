@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the wall-clock time a script may run on the current thread.
+ *
+ * The scripts are instrumented by {@link ScriptInstrumenter} to call {@link #check()} at the beginning of each loop iteration and
+ * function call. Once the deadline is exceeded, every check throws a {@link ScriptTimeoutException}, so that a script catching the
+ * exception in a loop is interrupted at the next iteration.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ExecutionBudget {
+
+    /**
+     * Name of the non-writable global variable exposing the budget to the instrumented scripts.
+     */
+    public static final String VARIABLE_NAME = "__budget__";
+
+    public static final ExecutionBudget INSTANCE = new ExecutionBudget();
+
+    private static final ThreadLocal<Deadline> DEADLINE = new ThreadLocal<>();
+    private static final LongAdder TIMEOUTS = new LongAdder();
+
+    private ExecutionBudget() {}
+
+    /**
+     * Starts a budget of {@code maxExecutionTime} milliseconds for the script evaluated on the current thread.
+     */
+    static void start(long maxExecutionTime) {
+        DEADLINE.set(new Deadline(System.nanoTime() + maxExecutionTime * 1_000_000, maxExecutionTime));
+    }
+
+    static void stop() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * @return the number of scripts interrupted because they exceeded their budget.
+     */
+    public static long timeouts() {
+        return TIMEOUTS.sum();
+    }
+
+    /**
+     * Called by the instrumented scripts.
+     */
+    public void check() {
+        final Deadline deadline = DEADLINE.get();
+        if (deadline != null && System.nanoTime() - deadline.nanoTime > 0) {
+            if (!deadline.exceeded) {
+                deadline.exceeded = true;
+                TIMEOUTS.increment();
+            }
+            throw new ScriptTimeoutException(deadline.maxExecutionTime);
+        }
+    }
+
+    private static final class Deadline {
+
+        private final long nanoTime;
+        private final long maxExecutionTime;
+        private boolean exceeded;
+
+        private Deadline(long nanoTime, long maxExecutionTime) {
+            this.nanoTime = nanoTime;
+            this.maxExecutionTime = maxExecutionTime;
+        }
+    }
+}
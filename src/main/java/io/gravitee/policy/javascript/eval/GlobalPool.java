@@ -0,0 +1,312 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import static io.gravitee.policy.javascript.eval.ScriptContextBindings.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import lombok.CustomLog;
+import org.openjdk.nashorn.api.scripting.ScriptObjectMirror;
+
+/**
+ * Pool of initialised Nashorn globals, so that a new ECMAScript global is not built for every script execution.
+ *
+ * Idle globals are kept per thread, up to {@code maxIdlePerThread} globals for each thread. When a global is released, it is
+ * scrubbed before going back to the pool:
+ * <ul>
+ *     <li>the per-execution variables (request, response, message, messages, context, result, httpClient) are reset to undefined,</li>
+ *     <li>the properties added by the script are deleted, or set to undefined when they cannot be deleted (global <code>var</code>),</li>
+ *     <li>the properties replaced by the script are restored, on the global and on every object reachable from it when the global
+ *     was created: built-in constructors, prototypes, functions (<code>JSON.parse</code>, <code>Math.max</code>, ...) and the
+ *     objects they hold,</li>
+ *     <li>the last match of the regular expressions is cleared.</li>
+ * </ul>
+ * Properties are compared by value, so a built-in property redefined as an accessor returning its original value is not detected.
+ * A global which cannot be fully restored (frozen object, non-writable property added by the script, prototype replaced, ...) is
+ * discarded.
+ *
+ * Globals are shared by all the APIs, so reusing them is opt-in: the default {@code maxIdlePerThread}, 0, creates a new global for
+ * each execution.
+ *
+ * @author GraviteeSource Team
+ */
+@CustomLog
+public class GlobalPool {
+
+    public static final int DEFAULT_MAX_IDLE_PER_THREAD = 0;
+
+    static final List<String> EXECUTION_VARIABLES = List.of(
+        CONTEXT_VARIABLE_NAME,
+        RESULT_VARIABLE_NAME,
+        REQUEST_VARIABLE_NAME,
+        RESPONSE_VARIABLE_NAME,
+        MESSAGE_VARIABLE_NAME,
+        MESSAGES_VARIABLE_NAME,
+        HTTP_CLIENT_VARIABLE_NAME
+    );
+
+    /**
+     * Declares the execution variables, then returns a function taking the snapshot of the global once the sandbox has been
+     * applied. The snapshot function returns the scrub function, which returns whether the global has been fully restored.
+     *
+     * Built-in functions are captured when the global is created, and only operators are used on the objects handled by the
+     * scripts, so that a script cannot alter the scrubbing of its global.
+     */
+    private static final String SETUP_SCRIPT =
+        """
+        (function (global) {
+            %s
+            return function () {
+                var getOwnPropertyNames = Object.getOwnPropertyNames;
+                var getOwnPropertyDescriptor = Object.getOwnPropertyDescriptor;
+                var defineProperty = Object.defineProperty;
+                var isExtensible = Object.isExtensible;
+                var getPrototypeOf = Object.getPrototypeOf;
+                var create = Object.create;
+                var targets = [global];
+                var baselines = [];
+                var i, j, names, values, descriptors, descriptor;
+
+                // Every object reachable from the global, built-in functions and their own properties included, is restored.
+                var visit = function (value) {
+                    if ((typeof value === 'function' || (typeof value === 'object' && value !== null)) && targets.indexOf(value) < 0) {
+                        try {
+                            getOwnPropertyNames(value);
+                            targets.push(value);
+                        } catch (e) {
+                            // Not a script object, such as a Java class bound by the initializer.
+                        }
+                    }
+                };
+
+                for (i = 0; i < targets.length; i++) {
+                    names = getOwnPropertyNames(targets[i]);
+                    values = [];
+                    descriptors = create(null);
+                    for (j = 0; j < names.length; j++) {
+                        descriptor = getOwnPropertyDescriptor(targets[i], names[j]);
+                        descriptors[names[j]] = descriptor;
+                        values[j] = 'value' in descriptor ? descriptor.value : descriptor;
+                        if ('value' in descriptor) {
+                            visit(descriptor.value);
+                        } else {
+                            visit(descriptor.get);
+                            visit(descriptor.set);
+                        }
+                    }
+                    baselines[i] = { names: names, values: values, descriptors: descriptors, prototype: getPrototypeOf(targets[i]) };
+                }
+
+                // Assigning the original value, rather than redefining the property, keeps the call sites linked to the global valid.
+                var restore = function (target, name, original) {
+                    var current = getOwnPropertyDescriptor(target, name);
+                    if (current !== undefined && 'value' in current && original.writable && current.writable &&
+                        current.enumerable === original.enumerable && current.configurable === original.configurable) {
+                        target[name] = original.value;
+                    } else {
+                        defineProperty(target, name, original);
+                    }
+                };
+
+                // Restores the properties replaced or deleted by the script.
+                var restoreChanged = function (target, baseline) {
+                    var names = baseline.names, values = baseline.values, descriptors = baseline.descriptors;
+                    var n, name, value, original, current;
+                    for (n = 0; n < names.length; n++) {
+                        name = names[n];
+                        original = descriptors[name];
+                        if (values[n] === original) {
+                            current = getOwnPropertyDescriptor(target, name);
+                            if (current === undefined || current.get !== original.get || current.set !== original.set) {
+                                defineProperty(target, name, original);
+                            }
+                        } else {
+                            value = target[name];
+                            if (value !== values[n] && (value === value || values[n] === values[n])) {
+                                restore(target, name, original);
+                            }
+                        }
+                    }
+                };
+
+                // Removes the properties added by the script, or resets them when they cannot be removed.
+                var removeAdded = function (target, baseline, keys) {
+                    var k, current;
+                    for (k = 0; k < keys.length; k++) {
+                        if (baseline.descriptors[keys[k]] === undefined) {
+                            current = getOwnPropertyDescriptor(target, keys[k]);
+                            if (current.configurable) {
+                                delete target[keys[k]];
+                            } else if (current.writable) {
+                                target[keys[k]] = undefined;
+                            } else {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                };
+
+                // The last match of a regular expression ($1, lastMatch, ...) is held by the global and exposed as read-only
+                // properties of RegExp, it is cleared by matching an empty string before comparing them to their baseline.
+                var clearLastMatch = Function.prototype.bind.call(RegExp.prototype.exec, /(?:)/, '');
+
+                return function () {
+                    var t, target, baseline, keys;
+                    try {
+                        clearLastMatch();
+                        for (t = 0; t < targets.length; t++) {
+                            target = targets[t];
+                            baseline = baselines[t];
+                            if (!isExtensible(target) || getPrototypeOf(target) !== baseline.prototype) {
+                                return false;
+                            }
+                            restoreChanged(target, baseline);
+                            keys = getOwnPropertyNames(target);
+                            if (keys.length > baseline.names.length + 256) {
+                                return false;
+                            }
+                            if (keys.length !== baseline.names.length && !removeAdded(target, baseline, keys)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    } catch (e) {
+                        return false;
+                    }
+                };
+            };
+        })(this);
+        """.formatted(EXECUTION_VARIABLES.stream().map(name -> "global." + name + " = undefined;").collect(Collectors.joining(" ")));
+
+    private final ScriptEngine engine;
+    private final ScriptSandbox sandbox;
+    private final Consumer<Bindings> initializer;
+    private final int maxIdlePerThread;
+    private final CompiledScript setup;
+    private final ThreadLocal<Deque<PooledGlobal>> idleGlobals = ThreadLocal.withInitial(ArrayDeque::new);
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    /**
+     * @param initializer binds the variables shared by all the executions, once per global.
+     */
+    public GlobalPool(ScriptEngine engine, ScriptSandbox sandbox, Consumer<Bindings> initializer, int maxIdlePerThread) {
+        this.engine = engine;
+        this.sandbox = sandbox;
+        this.initializer = initializer;
+        this.maxIdlePerThread = maxIdlePerThread;
+        try {
+            this.setup = ((Compilable) engine).compile(SETUP_SCRIPT);
+        } catch (ScriptException e) {
+            throw new IllegalStateException("Unable to compile Javascript global setup", e);
+        }
+    }
+
+    public PooledGlobal acquire() {
+        final PooledGlobal global = idleGlobals.get().pollFirst();
+        if (global != null) {
+            reused.increment();
+            return global;
+        }
+
+        created.increment();
+        return create();
+    }
+
+    /**
+     * Scrubs the global and makes it available for the next execution on the current thread.
+     */
+    public void release(PooledGlobal global) {
+        if (maxIdlePerThread > 0 && global.scrub()) {
+            final Deque<PooledGlobal> idle = idleGlobals.get();
+            if (idle.size() < maxIdlePerThread) {
+                idle.addFirst(global);
+                return;
+            }
+        }
+        discarded.increment();
+    }
+
+    public ScriptEngine engine() {
+        return engine;
+    }
+
+    public long created() {
+        return created.sum();
+    }
+
+    public long reused() {
+        return reused.sum();
+    }
+
+    public long discarded() {
+        return discarded.sum();
+    }
+
+    private PooledGlobal create() {
+        final Bindings bindings = engine.createBindings();
+        initializer.accept(bindings);
+
+        final SimpleScriptContext scriptContext = new SimpleScriptContext();
+        scriptContext.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+
+        try {
+            final ScriptObjectMirror snapshot = (ScriptObjectMirror) setup.eval(scriptContext);
+            sandbox.apply(scriptContext);
+            return new PooledGlobal(bindings, maxIdlePerThread > 0 ? (ScriptObjectMirror) snapshot.call(null) : null);
+        } catch (ScriptException e) {
+            throw new IllegalStateException("Unable to initialize Javascript global", e);
+        }
+    }
+
+    public static class PooledGlobal {
+
+        private final Bindings bindings;
+        private final ScriptObjectMirror scrub;
+
+        PooledGlobal(Bindings bindings, ScriptObjectMirror scrub) {
+            this.bindings = bindings;
+            this.scrub = scrub;
+        }
+
+        public Bindings bindings() {
+            return bindings;
+        }
+
+        boolean scrub() {
+            try {
+                return scrub != null && Boolean.TRUE.equals(scrub.call(null));
+            } catch (RuntimeException e) {
+                log.debug("Unable to scrub Javascript global, it will be discarded", e);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.CustomLog;
+import org.openjdk.nashorn.api.scripting.NashornScriptEngineFactory;
+
+/**
+ * Directory where Nashorn persists the classes it generates for compiled scripts, so that they are reused after a gateway restart.
+ *
+ * The cache is stored in <code>&lt;base directory&gt;/nashorn-code-cache/&lt;policy version&gt;</code>, Nashorn adding its own
+ * version directory below it. The version directories left by other versions of the policy are deleted: only the directories of
+ * <code>nashorn-code-cache</code> holding the marker file written by the policy are, so that a base directory shared with other
+ * applications is never altered. Before the engine is created, the oldest files are removed until the cache fits in
+ * {@code maxSize} bytes. The size is only enforced then: the cache may grow beyond it until the next start of the gateway.
+ *
+ * Nashorn only reads the location of the cache from system properties. They are set while the policy creates its engines, then
+ * cleared, unless the gateway already defines them, in which case its directories are used. The type information directory is
+ * read once per JVM though, when Nashorn first needs it: any other Nashorn engine of the JVM loaded by the same class loader
+ * shares it with the policy.
+ *
+ * Nashorn does not persist scripts shorter than 1000 characters, which are cheap to compile anyway.
+ *
+ * @author GraviteeSource Team
+ */
+@CustomLog
+public class PersistentCodeCache {
+
+    static final String NASHORN_CODE_CACHE_PROPERTY = "nashorn.persistent.code.cache";
+    static final String NASHORN_TYPE_INFO_CACHE_PROPERTY = "nashorn.typeInfo.cacheDir";
+    static final String OWNED_DIRECTORY = "nashorn-code-cache";
+    static final String MARKER_FILE = ".gravitee-policy-javascript";
+
+    /**
+     * Reads the type information directory from its system property in its static initializer.
+     */
+    private static final String OPTIMISTIC_TYPES_PERSISTENCE = "org.openjdk.nashorn.internal.codegen.OptimisticTypesPersistence";
+
+    private static final String CODE_DIRECTORY = "code";
+    private static final String TYPE_INFO_DIRECTORY = "types";
+
+    private final Path directory;
+    private final long maxSize;
+
+    public PersistentCodeCache(Path baseDirectory, String version, long maxSize) {
+        this.directory = baseDirectory.resolve(OWNED_DIRECTORY).resolve(version);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Prepares the cache directory. Must be called before the engines are created.
+     */
+    public void prepare() {
+        try {
+            Files.createDirectories(directory);
+            if (Files.notExists(directory.resolve(MARKER_FILE))) {
+                Files.createFile(directory.resolve(MARKER_FILE));
+            }
+            deleteOtherVersions();
+            prune();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to prepare Javascript code cache directory " + directory, e);
+        }
+    }
+
+    /**
+     * @return the Nashorn options enabling the persistent code cache.
+     */
+    public String[] engineOptions() {
+        return new String[] { "--persistent-code-cache=true" };
+    }
+
+    /**
+     * Points Nashorn to the cache directory while the engines are created, the system properties already defined being kept.
+     *
+     * @param engineCreation creates the engines, with the {@link #engineOptions()}.
+     * @return the engines created.
+     */
+    public <T> T createEngines(Supplier<T> engineCreation) {
+        final boolean codeCacheDefined = setIfUndefined(NASHORN_CODE_CACHE_PROPERTY, directory.resolve(CODE_DIRECTORY));
+        final boolean typeInfoCacheDefined = setIfUndefined(NASHORN_TYPE_INFO_CACHE_PROPERTY, directory.resolve(TYPE_INFO_DIRECTORY));
+        try {
+            initializeTypeInfoCache();
+            return engineCreation.get();
+        } finally {
+            if (codeCacheDefined) {
+                System.clearProperty(NASHORN_CODE_CACHE_PROPERTY);
+            }
+            if (typeInfoCacheDefined) {
+                System.clearProperty(NASHORN_TYPE_INFO_CACHE_PROPERTY);
+            }
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Deletes the oldest files of the cache until its total size is lower than {@code maxSize}.
+     */
+    public void prune() throws IOException {
+        final List<CachedFile> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.toList()) {
+                final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isRegularFile() && !path.getFileName().toString().equals(MARKER_FILE)) {
+                    files.add(new CachedFile(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                }
+            }
+        }
+
+        long size = files.stream().mapToLong(CachedFile::size).sum();
+        files.sort(Comparator.comparingLong(CachedFile::lastModified));
+
+        for (CachedFile file : files) {
+            if (size <= maxSize) {
+                break;
+            }
+            Files.deleteIfExists(file.path());
+            size -= file.size();
+        }
+    }
+
+    /**
+     * Only deletes the directories created by the policy, recognized by their marker file.
+     */
+    private void deleteOtherVersions() throws IOException {
+        try (Stream<Path> versions = Files.list(directory.getParent())) {
+            final List<Path> otherVersions = versions
+                .filter(path -> !path.equals(directory))
+                .filter(path -> Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+                .filter(path -> Files.isRegularFile(path.resolve(MARKER_FILE), LinkOption.NOFOLLOW_LINKS))
+                .toList();
+            for (Path version : otherVersions) {
+                log.debug("Deleting Javascript code cache of another policy version {}", version);
+                delete(version);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the property has been set, <code>false</code> if it was already defined.
+     */
+    private static boolean setIfUndefined(String property, Path value) {
+        if (System.getProperty(property) != null) {
+            log.debug("Nashorn system property {} already defined, it is used by the Javascript code cache", property);
+            return false;
+        }
+        System.setProperty(property, value.toString());
+        return true;
+    }
+
+    /**
+     * Reads the type information directory now, as Nashorn would otherwise read it once the system property has been cleared.
+     */
+    private static void initializeTypeInfoCache() {
+        try {
+            Class.forName(OPTIMISTIC_TYPES_PERSISTENCE, true, NashornScriptEngineFactory.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.debug("Unable to initialize the Nashorn type information cache", e);
+        }
+    }
+
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * @return the version of the policy, as declared in its plugin descriptor.
+     */
+    public static String pluginVersion() {
+        try (InputStream descriptor = PersistentCodeCache.class.getClassLoader().getResourceAsStream("plugin.properties")) {
+            if (descriptor != null) {
+                final Properties properties = new Properties();
+                properties.load(descriptor);
+                return properties.getProperty("version", "unknown");
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read the policy version, the Javascript code cache will not be versioned", e);
+        }
+        return "unknown";
+    }
+
+    private record CachedFile(Path path, long size, long lastModified) {}
+}
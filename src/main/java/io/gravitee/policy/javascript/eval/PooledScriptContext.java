@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.SimpleScriptContext;
+
+/**
+ * {@link ScriptContext} whose global has been borrowed from a {@link GlobalPool}.
+ *
+ * The global must not be used anymore once the context has been released: the variables needed afterward (result, output, ...)
+ * must be read before calling {@link #release()}. A context released while a worker still evaluates a script against it, when the
+ * execution is disposed, gives its global back once the evaluation is over.
+ *
+ * @author GraviteeSource Team
+ */
+public class PooledScriptContext extends SimpleScriptContext {
+
+    private final GlobalPool pool;
+    private final GlobalPool.PooledGlobal global;
+    private int evaluations;
+    private boolean releasing;
+    private boolean released;
+
+    PooledScriptContext(GlobalPool pool, GlobalPool.PooledGlobal global) {
+        this.pool = pool;
+        this.global = global;
+        setBindings(global.bindings(), ScriptContext.ENGINE_SCOPE);
+    }
+
+    /**
+     * @return the engine owning the global, the only one able to evaluate scripts against it.
+     */
+    public ScriptEngine engine() {
+        return pool.engine();
+    }
+
+    /**
+     * Gives the global back to its pool, or once the evaluation in progress is over. Only the first call has an effect.
+     */
+    public void release() {
+        synchronized (this) {
+            releasing = true;
+            if (!isReleasable()) {
+                return;
+            }
+        }
+        pool.release(global);
+    }
+
+    /**
+     * Marks the global as used by an evaluation, until {@link #evaluated()}.
+     */
+    synchronized void evaluating() {
+        evaluations++;
+    }
+
+    void evaluated() {
+        synchronized (this) {
+            evaluations--;
+            if (!releasing || !isReleasable()) {
+                return;
+            }
+        }
+        pool.release(global);
+    }
+
+    private boolean isReleasable() {
+        if (released || evaluations > 0) {
+            return false;
+        }
+        released = true;
+        return true;
+    }
+}
@@ -18,6 +18,7 @@ package io.gravitee.policy.javascript.eval;
 public class ScriptContextBindings {
 
     public static final String MESSAGE_VARIABLE_NAME = "message";
+    public static final String MESSAGES_VARIABLE_NAME = "messages";
     public static final String REQUEST_VARIABLE_NAME = "request";
     public static final String RESPONSE_VARIABLE_NAME = "response";
     public static final String CONTEXT_VARIABLE_NAME = "context";
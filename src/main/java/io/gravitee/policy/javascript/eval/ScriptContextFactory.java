@@ -16,7 +16,11 @@
 package io.gravitee.policy.javascript.eval;
 
 import static io.gravitee.policy.javascript.JavascriptInitializer.HTTP_CLIENT;
-import static io.gravitee.policy.javascript.JavascriptInitializer.JAVASCRIPT_ENGINE;
+import static io.gravitee.policy.javascript.JavascriptInitializer.HTTP_CLIENT_CACHE;
+import static io.gravitee.policy.javascript.JavascriptInitializer.HTTP_CLIENT_COALESCER;
+import static io.gravitee.policy.javascript.JavascriptInitializer.HTTP_CLIENT_MAX_RESPONSE_SIZE;
+import static io.gravitee.policy.javascript.JavascriptInitializer.HTTP_CLIENT_METRICS;
+import static io.gravitee.policy.javascript.JavascriptInitializer.SCRIPT_ENGINES;
 import static io.gravitee.policy.javascript.eval.ScriptContextBindings.*;
 
 import io.gravitee.gateway.api.buffer.Buffer;
@@ -34,10 +38,11 @@ import io.gravitee.policy.v3.javascript.model.JsContentAwareRequest;
 import io.gravitee.policy.v3.javascript.model.JsContentAwareResponse;
 import io.gravitee.policy.v3.javascript.model.JsExecutionContext;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
 import java.util.function.Consumer;
 import javax.script.Bindings;
 import javax.script.ScriptContext;
-import javax.script.SimpleScriptContext;
 import jdk.dynalink.beans.StaticClass;
 
 public class ScriptContextFactory {
@@ -60,10 +65,27 @@ public class ScriptContextFactory {
         });
     }
 
-    public static ScriptContext createHttpMessageScriptContext(final HttpMessageExecutionContext ctx, final Message message) {
-        return createCommonScriptContext(new JsHttpBaseExecutionContext(ctx), bindings -> {
-            bindings.put(MESSAGE_VARIABLE_NAME, new JsMessage(message));
-        });
+    /**
+     * Creates the parts of the script contexts shared by all the messages of a connection.
+     */
+    public static MessageScope createHttpMessageScope(final HttpMessageExecutionContext ctx) {
+        return new MessageScope(new JsHttpBaseExecutionContext(ctx));
+    }
+
+    public static ScriptContext createHttpMessageScriptContext(final MessageScope scope, final Message message) {
+        final JsMessage jsMessage = new JsMessage(message);
+        final ScriptContext scriptContext = scope.createScriptContext(jsMessage.getResult());
+        scriptContext.setAttribute(MESSAGE_VARIABLE_NAME, jsMessage, ScriptContext.ENGINE_SCOPE);
+        return scriptContext;
+    }
+
+    /**
+     * Binds a batch of messages, each of them holding its own result.
+     */
+    public static ScriptContext createHttpMessagesScriptContext(final MessageScope scope, final List<JsMessage> messages) {
+        final ScriptContext scriptContext = scope.createScriptContext(new PolicyResult());
+        scriptContext.setAttribute(MESSAGES_VARIABLE_NAME, messages, ScriptContext.ENGINE_SCOPE);
+        return scriptContext;
     }
 
     public static ScriptContext createContentAwareScriptContext(
@@ -77,29 +99,88 @@ public class ScriptContextFactory {
         });
     }
 
-    private static <T> ScriptContext createCommonScriptContext(final T ctx, Consumer<Bindings> extraBindingsConfigurer) {
-        Bindings bindings = JAVASCRIPT_ENGINE.createBindings();
-        sanitizeBindings(bindings);
-        bindings.put(CONTEXT_VARIABLE_NAME, ctx);
-        bindings.put(RESULT_VARIABLE_NAME, new PolicyResult());
+    /**
+     * Gives the global of a context created by this factory back to its pool, once the script results have been read.
+     */
+    public static void release(ScriptContext scriptContext) {
+        if (scriptContext instanceof PooledScriptContext pooledScriptContext) {
+            pooledScriptContext.release();
+        }
+    }
 
+    /**
+     * Binds the variables shared by all the executions, once per global.
+     */
+    public static void initializeBindings(Bindings bindings) {
+        sanitizeBindings(bindings);
         bindings.put(STATE_CLASS_VARIABLE_NAME, StaticClass.forClass(PolicyResult.State.class));
         bindings.put(REQUEST_CLASS_VARIABLE_NAME, StaticClass.forClass(JsClientRequest.class));
-        bindings.put(HTTP_CLIENT_VARIABLE_NAME, new JsHttpClient(HTTP_CLIENT));
+        bindings.put(ExecutionBudget.VARIABLE_NAME, ExecutionBudget.INSTANCE);
+    }
+
+    private static <T> ScriptContext createCommonScriptContext(final T ctx, Consumer<Bindings> extraBindingsConfigurer) {
+        final PooledScriptContext scriptContext = acquireScriptContext();
+        final Bindings bindings = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
+        bindings.put(CONTEXT_VARIABLE_NAME, ctx);
+        bindings.put(RESULT_VARIABLE_NAME, new PolicyResult());
+        bindings.put(HTTP_CLIENT_VARIABLE_NAME, createHttpClient());
 
         extraBindingsConfigurer.accept(bindings);
 
-        final SimpleScriptContext scriptContext = new SimpleScriptContext();
         final StringWriter printWriter = new StringWriter();
         final StringWriter errorWriter = new StringWriter();
 
-        scriptContext.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
         scriptContext.setWriter(printWriter);
         scriptContext.setErrorWriter(errorWriter);
 
         return scriptContext;
     }
 
+    /**
+     * Each execution gets its own client, tracking its calls, on top of the HTTP client, cache and in-flight calls shared by all of them.
+     */
+    private static JsHttpClient createHttpClient() {
+        return new JsHttpClient(HTTP_CLIENT, HTTP_CLIENT_METRICS, HTTP_CLIENT_CACHE, HTTP_CLIENT_COALESCER, HTTP_CLIENT_MAX_RESPONSE_SIZE);
+    }
+
+    private static PooledScriptContext acquireScriptContext() {
+        final GlobalPool globalPool = SCRIPT_ENGINES.globalPool();
+        return new PooledScriptContext(globalPool, globalPool.acquire());
+    }
+
+    /**
+     * The parts of the message script contexts which do not change from one message to another of the same connection, so that only
+     * the message, its result and the HTTP client are bound for each message. The HTTP client tracks the calls of a single evaluation,
+     * it cannot be shared by messages evaluated concurrently. The context is shared by them, only its attribute methods are safe to
+     * call concurrently, see {@link JsHttpBaseExecutionContext}.
+     */
+    public static final class MessageScope {
+
+        /**
+         * The print functions are removed from the bindings, so nothing written by a script needs to be buffered.
+         */
+        private static final Writer DISCARDING_WRITER = Writer.nullWriter();
+
+        private final JsHttpBaseExecutionContext context;
+
+        private MessageScope(JsHttpBaseExecutionContext context) {
+            this.context = context;
+        }
+
+        private ScriptContext createScriptContext(PolicyResult result) {
+            final PooledScriptContext scriptContext = acquireScriptContext();
+            final Bindings bindings = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
+            bindings.put(CONTEXT_VARIABLE_NAME, context);
+            bindings.put(RESULT_VARIABLE_NAME, result);
+            bindings.put(HTTP_CLIENT_VARIABLE_NAME, createHttpClient());
+
+            scriptContext.setWriter(DISCARDING_WRITER);
+            scriptContext.setErrorWriter(DISCARDING_WRITER);
+
+            return scriptContext;
+        }
+    }
+
     protected static void sanitizeBindings(Bindings bindings) {
         bindings.remove("quit");
         bindings.remove("exit");
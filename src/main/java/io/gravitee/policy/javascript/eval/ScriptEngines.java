@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.script.ScriptEngine;
+
+/**
+ * Set of independent Nashorn engines, each one with its own {@link GlobalPool}, so that the threads executing scripts do not
+ * contend on the caches of a single Nashorn context.
+ *
+ * Each thread is bound to a shard the first time it executes a script, the shards being assigned in a round-robin fashion. With
+ * as many shards as event loops, each event loop gets its own engine.
+ *
+ * A global must always be evaluated with the engine of the shard it has been acquired from: see {@link PooledScriptContext#engine()}.
+ *
+ * @author GraviteeSource Team
+ */
+public class ScriptEngines {
+
+    private final List<Shard> shards;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final ThreadLocal<Shard> threadShard = ThreadLocal.withInitial(this::nextShard);
+
+    /**
+     * @param globalPoolFactory creates the pool of globals of each engine.
+     */
+    public ScriptEngines(int count, Supplier<ScriptEngine> engineFactory, Function<ScriptEngine, GlobalPool> globalPoolFactory) {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one Javascript engine is required, got " + count);
+        }
+
+        final List<Shard> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final ScriptEngine engine = engineFactory.get();
+            created.add(new Shard(engine, globalPoolFactory.apply(engine)));
+        }
+        this.shards = List.copyOf(created);
+    }
+
+    /**
+     * @return the engine bound to the current thread.
+     */
+    public ScriptEngine engine() {
+        return threadShard.get().engine();
+    }
+
+    /**
+     * @return the pool of globals of the engine bound to the current thread.
+     */
+    public GlobalPool globalPool() {
+        return threadShard.get().globalPool();
+    }
+
+    /**
+     * @return all the engines, in shard order.
+     */
+    public List<ScriptEngine> all() {
+        return shards.stream().map(Shard::engine).toList();
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    private Shard nextShard() {
+        return shards.get(Math.floorMod(nextShard.getAndIncrement(), shards.size()));
+    }
+
+    private record Shard(ScriptEngine engine, GlobalPool globalPool) {}
+}
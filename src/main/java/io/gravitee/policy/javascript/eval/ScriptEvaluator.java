@@ -15,46 +15,347 @@
  */
 package io.gravitee.policy.javascript.eval;
 
+import static io.gravitee.policy.javascript.eval.ScriptContextBindings.HTTP_CLIENT_VARIABLE_NAME;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.model.js.JsContent;
 import io.gravitee.policy.javascript.model.js.JsHttpClient;
 import io.reactivex.rxjava3.annotations.NonNull;
 import io.reactivex.rxjava3.annotations.Nullable;
+import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Maybe;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 import lombok.RequiredArgsConstructor;
+import org.openjdk.nashorn.api.scripting.ScriptObjectMirror;
 
 @RequiredArgsConstructor
 public class ScriptEvaluator {
 
-    private final Supplier<ScriptEngine> engineProvider;
+    private static final Set<String> BYTE_ARRAY_CLASSES = Set.of("Int8Array", "Uint8Array", "Uint8ClampedArray");
 
-    public Maybe<@NonNull Object> evalRx(String script, ScriptContext scriptContext) {
-        return Maybe.fromCallable(() -> {
-            try {
-                String evalResult = eval(script, scriptContext);
-                return Optional.ofNullable(evalResult).orElse("");
-            } catch (ScriptException | ExecutionException | InterruptedException e) {
-                throw new RuntimeException("Failed to execute JavaScript script", e);
+    private final Supplier<ScriptEngines> enginesProvider;
+    private final CompiledScriptCache scriptCache;
+
+    /**
+     * Executor running the evaluations of {@link #evalRx(String, ScriptContext)}, {@code null} to run them on the subscribing thread.
+     */
+    private final Executor executor;
+
+    /**
+     * Maximum time, in milliseconds, a script may run before being interrupted, 0 for no limit. See {@link ExecutionBudget}.
+     */
+    private final long maxExecutionTime;
+
+    /**
+     * Maximum time, in milliseconds, an HTTP call of a script may take, 0 for no limit. See {@link JsHttpClient#setTimeout(long)}.
+     */
+    private final long httpCallTimeout;
+
+    /**
+     * Scripts compiled by {@link #precompile(Collection)} for each engine, kept here so that they are never evicted from the shared
+     * cache while the policy is deployed.
+     */
+    private final Map<PrecompiledKey, CompiledScript> precompiledScripts = new ConcurrentHashMap<>();
+
+    public ScriptEvaluator(Supplier<ScriptEngines> enginesProvider, CompiledScriptCache scriptCache) {
+        this(enginesProvider, scriptCache, null, 0, 0);
+    }
+
+    /**
+     * Compiles the given scripts for every engine, ahead of their first evaluation.
+     *
+     * @throws IllegalArgumentException if one of the scripts does not compile.
+     */
+    public void precompile(Collection<String> scripts) {
+        for (ScriptEngine engine : enginesProvider.get().all()) {
+            for (String script : scripts) {
+                try {
+                    precompiledScripts.put(new PrecompiledKey(engine, script), compile(engine, script));
+                } catch (ScriptException e) {
+                    throw new IllegalArgumentException("Unable to compile Javascript script: " + e.getMessage(), e);
+                }
             }
-        });
+        }
+    }
+
+    /**
+     * Evaluates the script, then waits for the HTTP calls it started without blocking any thread. The returned {@link Maybe} signals
+     * on the Vert.x context it has been subscribed on. Disposing it, when the request is aborted or times out, cancels the HTTP calls
+     * still pending.
+     *
+     * The output of the script is a {@link String}, a <code>byte[]</code>, a {@link Buffer} or a {@link JsContent}, the 8-bit typed
+     * arrays being copied to a <code>byte[]</code>. Any other value results in an empty string.
+     */
+    public Maybe<@NonNull Object> evalRx(String script, ScriptContext scriptContext) {
+        return evaluateRx(scriptContext, () -> evalOrThrow(script, scriptContext));
+    }
+
+    /**
+     * Evaluates a script processing a batch of elements, like {@link #evalRx(String, ScriptContext)}. The script returns an array
+     * holding the output of each element, an element without output being null, as well as the elements beyond the end of the array.
+     * Any other returned value results in an empty list.
+     */
+    public Maybe<@NonNull List<Object>> evalAllRx(String script, ScriptContext scriptContext) {
+        return evaluateRx(scriptContext, () -> evalAllOrThrow(script, scriptContext));
+    }
+
+    /**
+     * Calls a function declared by a script previously evaluated against the context, like {@link #evalRx(String, ScriptContext)}.
+     * Completes without value when the function is not declared, or returns nothing usable as a content.
+     */
+    public Maybe<@NonNull Object> invokeRx(ScriptContext scriptContext, String function, Object... args) {
+        return evaluateRx(scriptContext, () -> invokeOrThrow(scriptContext, function, args));
     }
 
+    /**
+     * Evaluates the script and waits for the HTTP calls it started, blocking the current thread.
+     */
     public @Nullable String eval(String script, ScriptContext scriptContext)
         throws ScriptException, ExecutionException, InterruptedException {
-        // see https://github.com/javadelight/delight-nashorn-sandbox/issues/73
-        final String blockAccessToEngine =
-            "Object.defineProperty(this, 'engine', {});" + "Object.defineProperty(this, 'context', {});delete this.__noSuchProperty__;";
+        boundHttpCalls(scriptContext);
+        final JsHttpClient httpClient = httpClient(scriptContext);
+        final Object output;
+        httpClient.scriptStarted();
+        try {
+            output = evalScript(script, scriptContext);
+        } finally {
+            httpClient.scriptReturned();
+        }
 
-        Object ret = engineProvider.get().eval(blockAccessToEngine + script, scriptContext);
-
-        final JsHttpClient httpClient = (JsHttpClient) scriptContext.getAttribute("httpClient");
         httpClient.shutDown();
 
+        return output instanceof String text ? text : null;
+    }
+
+    private <T> Maybe<@NonNull T> evaluateRx(ScriptContext scriptContext, Callable<T> evaluation) {
+        return Maybe.defer(() -> {
+            final Context context = Vertx.currentContext();
+            boundHttpCalls(scriptContext);
+            return evaluate(() -> evaluateGuarded(scriptContext, evaluation), context)
+                .flatMap(output -> awaitHttpCalls(scriptContext, context).andThen(Maybe.just(output)))
+                .switchIfEmpty(awaitHttpCalls(scriptContext, context).toMaybe())
+                .doOnDispose(() -> httpClient(scriptContext).cancel());
+        });
+    }
+
+    /**
+     * Keeps the global of the context from being released while the evaluation, possibly on a worker, is in progress, and defers the
+     * callbacks of the HTTP calls answered meanwhile until the script has returned.
+     */
+    private static <T> T evaluateGuarded(ScriptContext scriptContext, Callable<T> evaluation) throws Exception {
+        final PooledScriptContext pooledScriptContext = scriptContext instanceof PooledScriptContext pooled ? pooled : null;
+        if (pooledScriptContext != null) {
+            pooledScriptContext.evaluating();
+        }
+        try {
+            return evaluateScript(scriptContext, evaluation);
+        } finally {
+            if (pooledScriptContext != null) {
+                pooledScriptContext.evaluated();
+            }
+        }
+    }
+
+    private static <T> T evaluateScript(ScriptContext scriptContext, Callable<T> evaluation) throws Exception {
+        final JsHttpClient httpClient = httpClient(scriptContext);
+        httpClient.scriptStarted();
+        try {
+            return evaluation.call();
+        } finally {
+            httpClient.scriptReturned();
+        }
+    }
+
+    private void boundHttpCalls(ScriptContext scriptContext) {
+        if (httpCallTimeout > 0) {
+            httpClient(scriptContext).setTimeout(httpCallTimeout);
+        }
+    }
+
+    private <T> Maybe<T> evaluate(Callable<T> evaluation, Context context) {
+        if (executor == null) {
+            return Maybe.fromCallable(evaluation);
+        }
+
+        return Maybe.create(emitter ->
+            executor.execute(() -> {
+                try {
+                    final T output = evaluation.call();
+                    runOnContext(context, () -> {
+                        if (output == null) {
+                            emitter.onComplete();
+                        } else {
+                            emitter.onSuccess(output);
+                        }
+                    });
+                } catch (Throwable t) {
+                    runOnContext(context, () -> emitter.onError(t));
+                }
+            })
+        );
+    }
+
+    private Object evalOrThrow(String script, ScriptContext scriptContext) {
+        try {
+            return Optional.<Object>ofNullable(evalScript(script, scriptContext)).orElse("");
+        } catch (ScriptException e) {
+            throw new RuntimeException("Failed to execute JavaScript script", e);
+        }
+    }
+
+    private List<Object> evalAllOrThrow(String script, ScriptContext scriptContext) {
+        final Object ret;
+        try {
+            ret = evalRaw(script, scriptContext);
+        } catch (ScriptException e) {
+            throw new RuntimeException("Failed to execute JavaScript script", e);
+        }
+
+        if (!(ret instanceof ScriptObjectMirror array) || !array.isArray()) {
+            return List.of();
+        }
+        final int length = ((Number) array.getMember("length")).intValue();
+        final List<Object> outputs = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            outputs.add(output(array.getSlot(i)));
+        }
+        return outputs;
+    }
+
+    private Object invokeOrThrow(ScriptContext scriptContext, String function, Object[] args) {
+        final Object member = scriptContext.getAttribute(function, ScriptContext.ENGINE_SCOPE);
+        if (!(member instanceof ScriptObjectMirror declared) || !declared.isFunction()) {
+            return null;
+        }
+
+        try {
+            return output(run(() -> declared.call(null, args)));
+        } catch (ScriptException e) {
+            throw new RuntimeException("Failed to execute JavaScript script", e);
+        }
+    }
+
+    private @Nullable Object evalScript(String script, ScriptContext scriptContext) throws ScriptException {
+        return output(evalRaw(script, scriptContext));
+    }
+
+    private Object evalRaw(String script, ScriptContext scriptContext) throws ScriptException {
+        final ScriptEngine engine = engineFor(scriptContext);
+        final CompiledScript precompiledScript = precompiledScripts.get(new PrecompiledKey(engine, script));
+        final CompiledScript compiledScript = precompiledScript != null ? precompiledScript : compile(engine, script);
+
         // Note: here we can do scriptContext.getWriter().toString() if we want to retrieve the printed logs but we won't display them in the gateway logs for now.
-        return (ret instanceof String) ? (String) ret : null;
+        return run(() -> compiledScript.eval(scriptContext));
+    }
+
+    /**
+     * @return the value returned by a script if it can be used as a content, else null.
+     */
+    private static @Nullable Object output(Object ret) {
+        if (ret instanceof String || ret instanceof byte[] || ret instanceof Buffer || ret instanceof JsContent) {
+            return ret;
+        }
+        if (ret instanceof ScriptObjectMirror mirror && BYTE_ARRAY_CLASSES.contains(mirror.getClassName())) {
+            final byte[] bytes = new byte[((Number) mirror.getMember("length")).intValue()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = ((Number) mirror.getSlot(i)).byteValue();
+            }
+            return bytes;
+        }
+        return null;
+    }
+
+    private CompiledScript compile(ScriptEngine engine, String script) throws ScriptException {
+        return scriptCache.get(engine, maxExecutionTime > 0 ? ScriptInstrumenter.instrument(script) : script);
     }
+
+    private Object run(Evaluation evaluation) throws ScriptException {
+        if (maxExecutionTime > 0) {
+            ExecutionBudget.start(maxExecutionTime);
+        }
+        try {
+            return evaluation.eval();
+        } catch (ScriptException e) {
+            throw timeoutCause(e).orElseThrow(() -> e);
+        } catch (RuntimeException e) {
+            throw timeoutCause(e).orElseThrow(() -> e);
+        } catch (StackOverflowError e) {
+            // Deep recursions exhaust the stack before the budget, they must not kill the thread running the script.
+            throw new ScriptException("Javascript call stack size exceeded");
+        } finally {
+            ExecutionBudget.stop();
+        }
+    }
+
+    private static Optional<ScriptTimeoutException> timeoutCause(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ScriptTimeoutException timeout) {
+                return Optional.of(timeout);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Completable awaitHttpCalls(ScriptContext scriptContext, Context context) {
+        return Completable.create(emitter ->
+            emitter.setDisposable(
+                httpClient(scriptContext)
+                    .whenComplete()
+                    .subscribe(
+                        () -> runOnContext(context, emitter::onComplete),
+                        error ->
+                            runOnContext(context, () -> emitter.onError(new RuntimeException("Failed to execute JavaScript script", error)))
+                    )
+            )
+        );
+    }
+
+    private static JsHttpClient httpClient(ScriptContext scriptContext) {
+        return (JsHttpClient) scriptContext.getAttribute(HTTP_CLIENT_VARIABLE_NAME);
+    }
+
+    /**
+     * Resumes the processing of the request on the Vert.x context it was running on, or on the current thread outside of Vert.x.
+     */
+    private static void runOnContext(Context context, Runnable runnable) {
+        if (context == null || context == Vertx.currentContext()) {
+            runnable.run();
+        } else {
+            context.runOnContext(ignored -> runnable.run());
+        }
+    }
+
+    /**
+     * A script must be evaluated by the engine owning the global of its context, which is not necessarily the engine of the current
+     * thread when the context has been created on another thread.
+     */
+    private ScriptEngine engineFor(ScriptContext scriptContext) {
+        if (scriptContext instanceof PooledScriptContext pooledScriptContext) {
+            return pooledScriptContext.engine();
+        }
+        return enginesProvider.get().engine();
+    }
+
+    @FunctionalInterface
+    private interface Evaluation {
+        Object eval() throws ScriptException;
+    }
+
+    private record PrecompiledKey(ScriptEngine engine, String script) {}
 }
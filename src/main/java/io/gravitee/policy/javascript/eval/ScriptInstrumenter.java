@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.openjdk.nashorn.api.tree.BlockTree;
+import org.openjdk.nashorn.api.tree.CompilationUnitTree;
+import org.openjdk.nashorn.api.tree.DoWhileLoopTree;
+import org.openjdk.nashorn.api.tree.ExpressionStatementTree;
+import org.openjdk.nashorn.api.tree.ForInLoopTree;
+import org.openjdk.nashorn.api.tree.ForLoopTree;
+import org.openjdk.nashorn.api.tree.FunctionDeclarationTree;
+import org.openjdk.nashorn.api.tree.FunctionExpressionTree;
+import org.openjdk.nashorn.api.tree.LiteralTree;
+import org.openjdk.nashorn.api.tree.Parser;
+import org.openjdk.nashorn.api.tree.SimpleTreeVisitorES5_1;
+import org.openjdk.nashorn.api.tree.StatementTree;
+import org.openjdk.nashorn.api.tree.Tree;
+import org.openjdk.nashorn.api.tree.WhileLoopTree;
+
+/**
+ * Rewrites a script so that it calls the {@link ExecutionBudget} at the beginning of each loop body and function body.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ScriptInstrumenter {
+
+    static final String CHECK = ExecutionBudget.VARIABLE_NAME + ".check();";
+
+    private ScriptInstrumenter() {}
+
+    /**
+     * @return the instrumented script, or the given script unchanged when it cannot be parsed: its compilation reports the error.
+     */
+    public static String instrument(String script) {
+        final CompilationUnitTree compilationUnit;
+        try {
+            compilationUnit = Parser.create("-strict").parse("script", script, null);
+        } catch (RuntimeException e) {
+            return script;
+        }
+        if (compilationUnit == null) {
+            return script;
+        }
+
+        final List<Insertion> insertions = new ArrayList<>();
+        compilationUnit.accept(new InsertionCollector(script, insertions), null);
+
+        final StringBuilder instrumented = new StringBuilder(script);
+        insertions
+            .stream()
+            .sorted(Comparator.comparingInt(Insertion::position).reversed())
+            .forEach(insertion -> instrumented.insert(insertion.position(), insertion.text()));
+        return instrumented.toString();
+    }
+
+    private record Insertion(int position, String text) {}
+
+    private static class InsertionCollector extends SimpleTreeVisitorES5_1<Void, Void> {
+
+        private final String script;
+        private final List<Insertion> insertions;
+
+        private InsertionCollector(String script, List<Insertion> insertions) {
+            this.script = script;
+            this.insertions = insertions;
+        }
+
+        @Override
+        public Void visitForLoop(ForLoopTree node, Void unused) {
+            instrumentLoopBody(node.getStatement());
+            return super.visitForLoop(node, unused);
+        }
+
+        @Override
+        public Void visitForInLoop(ForInLoopTree node, Void unused) {
+            instrumentLoopBody(node.getStatement());
+            return super.visitForInLoop(node, unused);
+        }
+
+        @Override
+        public Void visitWhileLoop(WhileLoopTree node, Void unused) {
+            instrumentLoopBody(node.getStatement());
+            return super.visitWhileLoop(node, unused);
+        }
+
+        @Override
+        public Void visitDoWhileLoop(DoWhileLoopTree node, Void unused) {
+            instrumentLoopBody(node.getStatement());
+            return super.visitDoWhileLoop(node, unused);
+        }
+
+        @Override
+        public Void visitFunctionDeclaration(FunctionDeclarationTree node, Void unused) {
+            instrumentFunctionBody(node.getBody());
+            return super.visitFunctionDeclaration(node, unused);
+        }
+
+        @Override
+        public Void visitFunctionExpression(FunctionExpressionTree node, Void unused) {
+            if (node.getBody() instanceof BlockTree body) {
+                instrumentFunctionBody(body);
+            }
+            return super.visitFunctionExpression(node, unused);
+        }
+
+        private void instrumentLoopBody(StatementTree body) {
+            final int start = (int) body.getStartPosition();
+            // The parser wraps the loops declaring variables in synthetic blocks, which have no braces.
+            if (body instanceof BlockTree && script.charAt(start) == '{') {
+                insertions.add(new Insertion(start + 1, CHECK));
+            } else {
+                // A single statement body is wrapped in a block, including its semicolon which is not part of the statement.
+                insertions.add(new Insertion(start, "{" + CHECK));
+                insertions.add(new Insertion(endOfStatement(body), "}"));
+            }
+        }
+
+        /**
+         * The check is inserted after the directive prologue ("use strict", ...) of the function, which must remain first.
+         */
+        private void instrumentFunctionBody(BlockTree body) {
+            for (StatementTree statement : body.getStatements()) {
+                if (!isDirective(statement)) {
+                    insertions.add(new Insertion((int) statement.getStartPosition(), CHECK));
+                    return;
+                }
+            }
+        }
+
+        private int endOfStatement(Tree statement) {
+            int position = (int) statement.getEndPosition();
+            int next = position;
+            while (next < script.length() && Character.isWhitespace(script.charAt(next))) {
+                next++;
+            }
+            return next < script.length() && script.charAt(next) == ';' ? next + 1 : position;
+        }
+
+        private static boolean isDirective(StatementTree statement) {
+            return (
+                statement instanceof ExpressionStatementTree expressionStatement &&
+                expressionStatement.getExpression() instanceof LiteralTree literal &&
+                literal.getValue() instanceof String
+            );
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+/**
+ * Hides the script engine and the {@link ScriptContext} from the scripts evaluated against a global, and prevents them from
+ * replacing their {@link ExecutionBudget}.
+ *
+ * The prelude doing so is compiled once per engine and applied once per global, so that user scripts are evaluated unmodified.
+ *
+ * @see <a href="https://github.com/javadelight/delight-nashorn-sandbox/issues/73">delight-nashorn-sandbox#73</a>
+ * @author GraviteeSource Team
+ */
+public class ScriptSandbox {
+
+    static final String PRELUDE =
+        "Object.defineProperty(this, 'engine', {});" +
+        "Object.defineProperty(this, 'context', {});delete this.__noSuchProperty__;" +
+        "Object.defineProperty(this, '" +
+        ExecutionBudget.VARIABLE_NAME +
+        "', { writable: false, configurable: false });";
+
+    private final CompiledScript prelude;
+
+    public ScriptSandbox(ScriptEngine engine) {
+        try {
+            this.prelude = ((Compilable) engine).compile(PRELUDE);
+        } catch (ScriptException e) {
+            throw new IllegalStateException("Unable to compile Javascript sandbox prelude", e);
+        }
+    }
+
+    /**
+     * Applies the sandbox to the global bound to the {@link ScriptContext#ENGINE_SCOPE} of the given context.
+     *
+     * Must be called once the variables of the script have been bound: the {@code context} variable can no longer be defined afterward.
+     */
+    public void apply(ScriptContext scriptContext) {
+        try {
+            prelude.eval(scriptContext);
+        } catch (ScriptException e) {
+            throw new IllegalStateException("Unable to apply Javascript sandbox", e);
+        }
+    }
+}
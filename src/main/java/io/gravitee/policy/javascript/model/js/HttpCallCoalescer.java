@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js;
+
+import io.vertx.core.MultiMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares the calls in flight between the scripts, so that a burst of executions sending the same request results in a single call
+ * to the server, whose response is given to all of them.
+ *
+ * Only the safe methods (GET, HEAD) are coalesced, and only with a call sent with the same URL, headers and payload, so that the
+ * shared response is the one each script would have received.
+ *
+ * @author GraviteeSource Team
+ */
+public class HttpCallCoalescer {
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD");
+
+    private final Map<String, CompletableFuture<JsClientResponse>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @return the key of the call of the request, null when it cannot be shared.
+     */
+    public String key(JsClientRequest request) {
+        if (request.getMethod() == null || request.getUrl() == null) {
+            return null;
+        }
+        final String method = request.getMethod().toUpperCase(Locale.ROOT);
+        if (!SAFE_METHODS.contains(method)) {
+            return null;
+        }
+
+        final StringBuilder key = new StringBuilder(method).append(' ').append(request.getUrl());
+        final MultiMap headers = request.getHeaders();
+        if (headers != null) {
+            final Map<String, String> sorted = new TreeMap<>();
+            headers.names().forEach(name -> sorted.put(name.toLowerCase(Locale.ROOT), String.join(",", headers.getAll(name))));
+            sorted.forEach((name, value) -> key.append('\n').append(name).append(':').append(value));
+        }
+        if (request.getPayload() != null) {
+            key.append("\n\n").append(request.getPayload());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Joins the call in flight for the key, or registers the given call as the one in flight until it completes.
+     *
+     * @return the call in flight to wait for, or null when the given call must be sent.
+     */
+    public CompletableFuture<JsClientResponse> join(String key, CompletableFuture<JsClientResponse> call) {
+        final CompletableFuture<JsClientResponse> pending = inFlight.putIfAbsent(key, call);
+        if (pending != null) {
+            coalesced.increment();
+            return pending;
+        }
+
+        call.whenComplete((response, error) -> inFlight.remove(key, call));
+        return null;
+    }
+
+    /**
+     * @return the number of calls which waited for an identical call instead of being sent.
+     */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the number of distinct calls in flight.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
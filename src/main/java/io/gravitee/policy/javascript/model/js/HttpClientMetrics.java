@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Occupancy and wait time of the HTTP client shared by the scripts, to size its connection pool.
+ *
+ * A call is <i>waiting</i> until the client gives it a connection, then <i>active</i> until its response has been read or it
+ * failed. A growing number of waiting calls, or a wait time close to the connect timeout, means the pool is too small.
+ *
+ * @author GraviteeSource Team
+ */
+public class HttpClientMetrics {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder waitTime = new LongAdder();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    /**
+     * Records a new call, waiting for a connection.
+     */
+    public Call start() {
+        requests.increment();
+        waiting.incrementAndGet();
+        return new Call(System.nanoTime());
+    }
+
+    /**
+     * @return the number of calls sent.
+     */
+    public long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return the number of calls waiting for a connection.
+     */
+    public int waiting() {
+        return waiting.get();
+    }
+
+    /**
+     * @return the number of calls holding a connection.
+     */
+    public int active() {
+        return active.get();
+    }
+
+    /**
+     * @return the average time the calls waited for a connection, in milliseconds.
+     */
+    public long averageWaitTime() {
+        final long count = connections.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitTime.sum() / count);
+    }
+
+    /**
+     * @return the longest time a call waited for a connection, in milliseconds.
+     */
+    public long maxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+
+    @Override
+    public String toString() {
+        return (
+            "HttpClientMetrics{requests=" +
+            requests() +
+            ", waiting=" +
+            waiting() +
+            ", active=" +
+            active() +
+            ", averageWaitTime=" +
+            averageWaitTime() +
+            "ms, maxWaitTime=" +
+            maxWaitTime() +
+            "ms}"
+        );
+    }
+
+    /**
+     * A single call. The callbacks of a call all run on the same Vert.x context, it does not need to be thread-safe.
+     */
+    public class Call {
+
+        private final long startTime;
+        private boolean connected;
+        private boolean ended;
+
+        private Call(long startTime) {
+            this.startTime = startTime;
+        }
+
+        public void connected() {
+            if (connected || ended) {
+                return;
+            }
+            connected = true;
+
+            final long wait = System.nanoTime() - startTime;
+            connections.increment();
+            waitTime.add(wait);
+            maxWaitTime.accumulateAndGet(wait, Math::max);
+            waiting.decrementAndGet();
+            active.incrementAndGet();
+        }
+
+        public void ended() {
+            if (ended) {
+                return;
+            }
+            ended = true;
+
+            if (connected) {
+                active.decrementAndGet();
+            } else {
+                waiting.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpHeaders;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded cache of the responses to the GET calls sent by the scripts, shared by all the executions.
+ *
+ * A response is kept for the <code>s-maxage</code> or <code>max-age</code> of its <code>Cache-Control</code> header, minus its
+ * <code>Age</code>, or for the default TTL when it does not declare any. It is not stored when it forbids it (<code>no-store</code>,
+ * <code>private</code>), or when it varies on a header which is not part of the key. Once expired, a response declaring an
+ * <code>ETag</code> or a <code>Last-Modified</code> date is revalidated with a conditional request, and reused as long as the server
+ * answers <code>304 - Not Modified</code>.
+ *
+ * The responses are keyed by URL and by the values of the key headers of the request. As the cache is shared by all the APIs, the
+ * requests carrying any other header are not cached, so that a response is never served to a request with different credentials.
+ * The responses to the requests carrying credentials (<code>Authorization</code>, <code>Cookie</code>...) are only cached for the
+ * <code>max-age</code> they declare, never for the default TTL. The least recently used responses are evicted once the estimated size
+ * of the cached responses exceeds the maximum size.
+ *
+ * @author GraviteeSource Team
+ */
+public class HttpResponseCache {
+
+    private static final Pattern MAX_AGE = Pattern.compile("(?:^|,)\\s*(s-maxage|max-age)\\s*=\\s*\"?(\\d+)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Estimated size of an entry besides its key, body and headers, in bytes.
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private static final Set<String> CREDENTIAL_HEADERS = Set.of("authorization", "proxy-authorization", "cookie", "x-api-key");
+
+    private final long maxSize;
+    private final long defaultTtl;
+    private final List<String> keyHeaders;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long size;
+
+    /**
+     * @param maxSize maximum estimated size of the cached responses, in bytes.
+     * @param defaultTtl time, in milliseconds, a response without <code>max-age</code> to a request without credentials is fresh for.
+     * @param keyHeaders headers of the requests whose values are part of the key of their responses.
+     */
+    public HttpResponseCache(long maxSize, long defaultTtl, List<String> keyHeaders) {
+        this.maxSize = maxSize;
+        this.defaultTtl = defaultTtl;
+        this.keyHeaders = keyHeaders.stream().map(name -> name.trim().toLowerCase(Locale.ROOT)).filter(name -> !name.isEmpty()).toList();
+    }
+
+    /**
+     * @return the key of the response to the request, null when the request is not a GET, has a payload or carries a header which is
+     * not a key header, like its own cache directives, validators or credentials.
+     */
+    public String key(JsClientRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod()) || request.getPayload() != null || request.getUrl() == null) {
+            return null;
+        }
+
+        final MultiMap headers = request.getHeaders();
+        if (
+            headers != null &&
+            (headers.contains(HttpHeaders.CACHE_CONTROL) ||
+                headers.contains(HttpHeaders.IF_NONE_MATCH) ||
+                headers.contains(HttpHeaders.IF_MODIFIED_SINCE))
+        ) {
+            return null;
+        }
+        if (headers != null) {
+            for (String name : headers.names()) {
+                if (!keyHeaders.contains(name.toLowerCase(Locale.ROOT))) {
+                    return null;
+                }
+            }
+        }
+
+        final StringBuilder key = new StringBuilder(request.getUrl());
+        for (String name : keyHeaders) {
+            key.append('\n').append(name).append(':');
+            if (headers != null) {
+                key.append(String.join(",", headers.getAll(name)));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the response cached for the key, fresh or to revalidate, null when there is none. Only the fresh responses are counted
+     * as hits.
+     */
+    public synchronized Entry get(String key) {
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.isFresh()) {
+            hits.increment();
+            return entry;
+        }
+
+        misses.increment();
+        if (entry != null && !entry.isRevalidable()) {
+            remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the response to the request of the key, if it can be cached.
+     */
+    public void store(String key, JsClientRequest request, JsClientResponse response) {
+        if (response.getStatus() != 200) {
+            return;
+        }
+
+        final boolean credentials = hasCredentials(request.getHeaders());
+        final MultiMap headers = response.getHeaders() != null ? response.getHeaders() : MultiMap.caseInsensitiveMultiMap();
+        final long ttl = ttl(headers, credentials);
+        final String etag = headers.get(HttpHeaders.ETAG);
+        final String lastModified = headers.get(HttpHeaders.LAST_MODIFIED);
+        if (ttl < 0 || (ttl == 0 && etag == null && lastModified == null)) {
+            synchronized (this) {
+                remove(key);
+            }
+            return;
+        }
+
+        put(key, new Entry(response.copy(), etag, lastModified, credentials, expiresAt(ttl), estimateSize(key, response)));
+    }
+
+    /**
+     * Refreshes a response the server answered <code>304 - Not Modified</code> to, with the cache directives of this answer.
+     *
+     * @return the cached response.
+     */
+    public JsClientResponse revalidated(String key, Entry entry, MultiMap headers) {
+        revalidations.increment();
+
+        final long ttl = ttl(headers.contains(HttpHeaders.CACHE_CONTROL) ? headers : entry.response.getHeaders(), entry.credentials);
+        if (ttl >= 0) {
+            put(key, new Entry(entry.response, entry.etag, entry.lastModified, entry.credentials, expiresAt(ttl), entry.size));
+        }
+        return entry.response();
+    }
+
+    /**
+     * @return the number of calls served from the cache, without sending any request.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of cacheable calls sent to the server, including the revalidations.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the ratio of the cacheable calls served from the cache, between 0 and 1.
+     */
+    public double hitRatio() {
+        final long hits = hits();
+        final long total = hits + misses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of expired responses the server confirmed as not modified.
+     */
+    public long revalidations() {
+        return revalidations.sum();
+    }
+
+    /**
+     * @return the number of responses evicted to respect the maximum size.
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of cached responses.
+     */
+    public synchronized int count() {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated size of the cached responses, in bytes.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return (
+            "HttpResponseCache{count=" +
+            count() +
+            ", size=" +
+            size() +
+            ", hits=" +
+            hits() +
+            ", misses=" +
+            misses() +
+            ", hitRatio=" +
+            String.format(Locale.ROOT, "%.2f", hitRatio()) +
+            ", revalidations=" +
+            revalidations() +
+            ", evictions=" +
+            evictions() +
+            "}"
+        );
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        remove(key);
+        if (entry.size > maxSize) {
+            return;
+        }
+
+        entries.put(key, entry);
+        size += entry.size;
+
+        final Iterator<Entry> eldest = entries.values().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            size -= eldest.next().size;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private void remove(String key) {
+        final Entry removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed.size;
+        }
+    }
+
+    private static boolean hasCredentials(MultiMap headers) {
+        if (headers != null) {
+            for (String name : headers.names()) {
+                if (CREDENTIAL_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param credentials whether the request carried credentials, the response is then not cached without <code>max-age</code>.
+     * @return the time, in milliseconds, the response is fresh for, or -1 if it must not be cached.
+     */
+    private long ttl(MultiMap headers, boolean credentials) {
+        final String vary = headers.get(HttpHeaders.VARY);
+        if (vary != null) {
+            for (String name : vary.split(",")) {
+                if (!keyHeaders.contains(name.trim().toLowerCase(Locale.ROOT))) {
+                    return -1;
+                }
+            }
+        }
+
+        final long heuristicTtl = credentials ? -1 : defaultTtl;
+        final String cacheControl = headers.get(HttpHeaders.CACHE_CONTROL);
+        if (cacheControl == null) {
+            return heuristicTtl;
+        }
+
+        final String directives = cacheControl.toLowerCase(Locale.ROOT);
+        if (directives.contains("no-store") || directives.contains("private")) {
+            return -1;
+        }
+        if (directives.contains("no-cache")) {
+            return 0;
+        }
+
+        long maxAge = -1;
+        final Matcher matcher = MAX_AGE.matcher(directives);
+        while (matcher.find()) {
+            // s-maxage applies to the shared caches, it overrides max-age.
+            if (maxAge < 0 || "s-maxage".equals(matcher.group(1))) {
+                maxAge = Long.parseLong(matcher.group(2));
+            }
+        }
+        if (maxAge < 0) {
+            return heuristicTtl;
+        }
+
+        final long age = parseSeconds(headers.get(HttpHeaders.AGE));
+        return TimeUnit.SECONDS.toMillis(Math.max(0, maxAge - age));
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return value != null ? Long.parseLong(value.trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long expiresAt(long ttl) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl);
+    }
+
+    /**
+     * Strings are counted as 2 bytes per character, the bodies not decoded yet as their number of bytes.
+     */
+    private static long estimateSize(String key, JsClientResponse response) {
+        long estimate = ENTRY_OVERHEAD + 2L * key.length();
+        estimate += response.size();
+        if (response.getHeaders() != null) {
+            for (Map.Entry<String, String> header : response.getHeaders()) {
+                estimate += 2L * (header.getKey().length() + header.getValue().length());
+            }
+        }
+        return estimate;
+    }
+
+    public static final class Entry {
+
+        private final JsClientResponse response;
+        private final String etag;
+        private final String lastModified;
+        private final boolean credentials;
+        private final long expiresAt;
+        private final long size;
+
+        private Entry(JsClientResponse response, String etag, String lastModified, boolean credentials, long expiresAt, long size) {
+            this.response = response;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.credentials = credentials;
+            this.expiresAt = expiresAt;
+            this.size = size;
+        }
+
+        public boolean isFresh() {
+            return System.nanoTime() - expiresAt < 0;
+        }
+
+        public boolean isRevalidable() {
+            return etag != null || lastModified != null;
+        }
+
+        public String etag() {
+            return etag;
+        }
+
+        public String lastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return a copy of the cached response.
+         */
+        public JsClientResponse response() {
+            return response.copy();
+        }
+    }
+}
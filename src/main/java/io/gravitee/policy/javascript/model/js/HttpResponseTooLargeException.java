@@ -0,0 +1,28 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js;
+
+/**
+ * Fails an HTTP call of a script whose response exceeds the maximum response size of the client.
+ *
+ * @author GraviteeSource Team
+ */
+public class HttpResponseTooLargeException extends RuntimeException {
+
+    public HttpResponseTooLargeException(String url, long maxResponseSize) {
+        super("HTTP response of " + url + " exceeds " + maxResponseSize + " bytes");
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.BiFunction;
+import org.openjdk.nashorn.api.scripting.AbstractJSObject;
+
+/**
+ * Read-only view over the bytes of a content, shared with the underlying buffer: nothing is copied to read the bytes or to slice the
+ * view.
+ *
+ * Scripts use it like an <code>Uint8Array</code> combined with a <code>DataView</code>:
+ * <ul>
+ *     <li><code>view.length</code> and <code>view[i]</code>, the unsigned value of the byte at index <code>i</code>,</li>
+ *     <li><code>view.slice(begin, end)</code>, a view over a part of the bytes, negative indexes being relative to the end,</li>
+ *     <li><code>view.getInt8(i)</code>, <code>getUint8</code>, <code>getInt16(i, littleEndian)</code>, <code>getUint16</code>,
+ *     <code>getInt32</code>, <code>getUint32</code>, <code>getFloat32</code> and <code>getFloat64</code>, big-endian by default,</li>
+ *     <li><code>view.text(charset)</code>, the bytes decoded as UTF-8 by default.</li>
+ * </ul>
+ *
+ * @author GraviteeSource Team
+ */
+public class JsByteView extends AbstractJSObject implements JsContent {
+
+    /**
+     * Shared by all the views, the view being the <code>this</code> of the call.
+     */
+    private static final Map<String, AbstractJSObject> METHODS = Map.ofEntries(
+        method("slice", (view, args) -> view.slice(intArg(args, 0, 0), intArg(args, 1, view.length()))),
+        method("getInt8", (view, args) -> (int) view.bytes.get(intArg(args, 0, 0))),
+        method("getUint8", (view, args) -> Byte.toUnsignedInt(view.bytes.get(intArg(args, 0, 0)))),
+        method("getInt16", (view, args) -> (int) view.ordered(args).getShort(intArg(args, 0, 0))),
+        method("getUint16", (view, args) -> Short.toUnsignedInt(view.ordered(args).getShort(intArg(args, 0, 0)))),
+        method("getInt32", (view, args) -> view.ordered(args).getInt(intArg(args, 0, 0))),
+        method("getUint32", (view, args) -> (double) Integer.toUnsignedLong(view.ordered(args).getInt(intArg(args, 0, 0)))),
+        method("getFloat32", (view, args) -> (double) view.ordered(args).getFloat(intArg(args, 0, 0))),
+        method("getFloat64", (view, args) -> view.ordered(args).getDouble(intArg(args, 0, 0))),
+        method("text", (view, args) -> view.text(args.length > 0 ? Charset.forName(args[0].toString()) : StandardCharsets.UTF_8))
+    );
+
+    private final ByteBuffer bytes;
+
+    /**
+     * The buffer the view has been created from, null for the slices.
+     */
+    private final Buffer source;
+
+    JsByteView(ByteBuffer bytes) {
+        this(bytes, null);
+    }
+
+    private JsByteView(ByteBuffer bytes, Buffer source) {
+        this.bytes = bytes.slice().asReadOnlyBuffer();
+        this.source = source;
+    }
+
+    /**
+     * @return a view over the bytes of the buffer. The bytes of a buffer made of several components are merged first.
+     */
+    public static JsByteView of(Buffer buffer) {
+        final ByteBuf nativeBuffer = buffer.getNativeBuffer();
+        return new JsByteView(nativeBuffer.nioBuffer(), buffer);
+    }
+
+    public static JsByteView empty() {
+        return new JsByteView(ByteBuffer.allocate(0));
+    }
+
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public Object getMember(String name) {
+        if ("length".equals(name) || "byteLength".equals(name)) {
+            return length();
+        }
+        return METHODS.get(name);
+    }
+
+    @Override
+    public boolean hasMember(String name) {
+        return getMember(name) != null;
+    }
+
+    @Override
+    public Object getSlot(int index) {
+        return hasSlot(index) ? Byte.toUnsignedInt(bytes.get(index)) : null;
+    }
+
+    @Override
+    public boolean hasSlot(int index) {
+        return index >= 0 && index < length();
+    }
+
+    @Override
+    public void setMember(String name, Object value) {
+        throw new UnsupportedOperationException("Content views are read-only");
+    }
+
+    @Override
+    public void setSlot(int index, Object value) {
+        throw new UnsupportedOperationException("Content views are read-only");
+    }
+
+    @Override
+    public String getClassName() {
+        return "ByteView";
+    }
+
+    /**
+     * Same semantics as <code>Uint8Array.prototype.subarray</code>.
+     */
+    public JsByteView slice(int begin, int end) {
+        final int from = clamp(begin);
+        final int to = Math.max(from, clamp(end));
+        return new JsByteView(bytes.duplicate().position(from).limit(to));
+    }
+
+    /**
+     * @return the buffer the view has been created from, or a copy of the bytes of a slice.
+     */
+    @Override
+    public Buffer toBuffer() {
+        if (source != null) {
+            return source;
+        }
+        final byte[] copy = new byte[length()];
+        bytes.duplicate().get(copy);
+        return Buffer.buffer(copy);
+    }
+
+    public String text(Charset charset) {
+        return charset.decode(bytes.duplicate()).toString();
+    }
+
+    private int clamp(int index) {
+        return index < 0 ? Math.max(0, length() + index) : Math.min(index, length());
+    }
+
+    private ByteBuffer ordered(Object[] args) {
+        final boolean littleEndian = args.length > 1 && Boolean.TRUE.equals(args[1]);
+        return bytes.duplicate().order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+    }
+
+    private static int intArg(Object[] args, int index, int defaultValue) {
+        return args.length > index && args[index] instanceof Number number ? number.intValue() : defaultValue;
+    }
+
+    private static Map.Entry<String, AbstractJSObject> method(String name, BiFunction<JsByteView, Object[], Object> body) {
+        return Map.entry(
+            name,
+            new AbstractJSObject() {
+                @Override
+                public boolean isFunction() {
+                    return true;
+                }
+
+                @Override
+                public Object call(Object thiz, Object... args) {
+                    if (!(thiz instanceof JsByteView view)) {
+                        throw new UnsupportedOperationException(name + " must be called on a content view");
+                    }
+                    return body.apply(view, args);
+                }
+            }
+        );
+    }
+}
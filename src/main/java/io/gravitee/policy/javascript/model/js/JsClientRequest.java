@@ -32,6 +32,11 @@ public class JsClientRequest {
     private MultiMap headers;
     private String payload;
 
+    /**
+     * Time, in milliseconds, the call is given to complete, 0 to use the timeout of the client.
+     */
+    private long timeout;
+
     public JsClientRequest() {}
 
     public JsClientRequest(String url) {
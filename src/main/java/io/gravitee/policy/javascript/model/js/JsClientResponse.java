@@ -16,8 +16,15 @@
 package io.gravitee.policy.javascript.model.js;
 
 import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import java.nio.charset.StandardCharsets;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 /**
  * @author Jeoffrey HAEYAERT (jeoffrey.haeyaert at graviteesource.com)
@@ -30,4 +37,66 @@ public class JsClientResponse {
     private int status;
     private String body;
     private MultiMap headers;
+
+    /**
+     * Body as received, decoded the first time {@link #getBody()} is called, so that the scripts which do not read the body, or read
+     * it as bytes, do not pay for building a string. It is never altered, the copies of a response share it.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Buffer content;
+
+    public String getBody() {
+        if (body == null && content != null) {
+            body = content.toString(StandardCharsets.UTF_8);
+        }
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+        this.content = null;
+    }
+
+    /**
+     * @return a copy of the body as bytes, without decoding it, or null without body.
+     */
+    public byte[] getBodyAsBytes() {
+        if (content != null) {
+            return content.getBytes();
+        }
+        return body != null ? body.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    void setContent(Buffer content) {
+        this.content = content;
+        this.body = null;
+    }
+
+    /**
+     * @return the size of the body held in memory, in bytes, strings being counted as 2 bytes per character.
+     */
+    long size() {
+        long size = content != null ? content.length() : 0;
+        if (body != null) {
+            size += 2L * body.length();
+        }
+        return size;
+    }
+
+    /**
+     * The responses are mutable, each script sharing a response gets its own copy.
+     */
+    JsClientResponse copy() {
+        final JsClientResponse copy = new JsClientResponse();
+        copy.setStatus(status);
+        copy.body = body;
+        copy.content = content;
+        if (headers != null) {
+            copy.setHeaders(MultiMap.caseInsensitiveMultiMap().addAll(headers));
+        }
+        return copy;
+    }
 }
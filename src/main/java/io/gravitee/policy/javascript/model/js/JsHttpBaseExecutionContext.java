@@ -23,6 +23,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * The context of the gateway exposed to the scripts. The same instance is shared by the messages of a connection, which may be
+ * evaluated concurrently, see {@link io.gravitee.policy.javascript.eval.ScriptContextFactory.MessageScope}: its attribute methods are
+ * synchronized, the map returned by {@link #getAttributes()} and the metrics are not.
+ *
+ * @author GraviteeSource Team
+ */
 public class JsHttpBaseExecutionContext {
 
     private static final String CONTEXT_DICTIONARIES_VARIABLE = "dictionaries";
@@ -60,27 +67,27 @@ public class JsHttpBaseExecutionContext {
         return executionContext.metrics();
     }
 
-    public void setAttribute(String s, Object o) {
+    public synchronized void setAttribute(String s, Object o) {
         executionContext.setAttribute(s, o);
     }
 
-    public void putAttribute(String s, Object o) {
+    public synchronized void putAttribute(String s, Object o) {
         executionContext.putAttribute(s, o);
     }
 
-    public void removeAttribute(String s) {
+    public synchronized void removeAttribute(String s) {
         executionContext.removeAttribute(s);
     }
 
-    public <T> T getAttribute(String s) {
+    public synchronized <T> T getAttribute(String s) {
         return executionContext.getAttribute(s);
     }
 
-    public <T> List<T> getAttributeAsList(String s) {
+    public synchronized <T> List<T> getAttributeAsList(String s) {
         return executionContext.getAttributeAsList(s);
     }
 
-    public Set<String> getAttributeNames() {
+    public synchronized Set<String> getAttributeNames() {
         return executionContext.getAttributeNames();
     }
 
@@ -15,16 +15,30 @@
  */
 package io.gravitee.policy.javascript.model.js;
 
+import io.reactivex.rxjava3.core.Completable;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.stream.LongStream;
 
 /**
  * @author Jeoffrey HAEYAERT (jeoffrey.haeyaert at graviteesource.com)
@@ -32,12 +46,73 @@ import java.util.function.BiConsumer;
  */
 public class JsHttpClient {
 
+    /**
+     * Expires the calls exceeding their timeout. The timer of a call is cancelled, and removed at once, when the call is settled, so
+     * that the call and its callback are not retained until its timeout would have elapsed.
+     */
+    private static final ScheduledThreadPoolExecutor TIMERS = newTimers();
+
     private final HttpClient httpClient;
-    private final Set<CompletableFuture<JsClientResponse>> futures;
+    private final HttpClientMetrics metrics;
+    private final HttpResponseCache cache;
+    private final HttpCallCoalescer coalescer;
+    private final long maxResponseSize;
+    private final Set<CompletableFuture<?>> futures;
+    private final Set<PendingCall> pendingCalls;
+
+    /**
+     * The Vert.x context the execution runs on, where the callbacks of the calls sent from a worker thread are run.
+     */
+    private final Context context;
+
+    /**
+     * Callbacks of the calls answered while the script is being evaluated, run once it has returned. Guards {@link #evaluating}.
+     */
+    private final List<Runnable> deferred = new ArrayList<>();
+    private boolean evaluating;
+    private volatile long timeout;
+    private volatile boolean cancelled;
 
     public JsHttpClient(HttpClient httpClient) {
+        this(httpClient, new HttpClientMetrics());
+    }
+
+    /**
+     * @param metrics shared by all the executions using the same {@link HttpClient}.
+     */
+    public JsHttpClient(HttpClient httpClient, HttpClientMetrics metrics) {
+        this(httpClient, metrics, null);
+    }
+
+    public JsHttpClient(HttpClient httpClient, HttpClientMetrics metrics, HttpResponseCache cache) {
+        this(httpClient, metrics, cache, null);
+    }
+
+    public JsHttpClient(HttpClient httpClient, HttpClientMetrics metrics, HttpResponseCache cache, HttpCallCoalescer coalescer) {
+        this(httpClient, metrics, cache, coalescer, 0);
+    }
+
+    /**
+     * @param cache shared by all the executions, null to send every call to the server.
+     * @param coalescer shared by all the executions, null to send identical calls in flight separately.
+     * @param maxResponseSize maximum size of a response body, in bytes, 0 for no limit. A call whose response exceeds it fails with
+     * a {@link HttpResponseTooLargeException} and its request is reset.
+     */
+    public JsHttpClient(
+        HttpClient httpClient,
+        HttpClientMetrics metrics,
+        HttpResponseCache cache,
+        HttpCallCoalescer coalescer,
+        long maxResponseSize
+    ) {
         this.httpClient = httpClient;
+        this.metrics = metrics;
+        this.cache = cache;
+        this.coalescer = coalescer;
+        this.maxResponseSize = maxResponseSize;
         this.futures = ConcurrentHashMap.newKeySet();
+        this.pendingCalls = ConcurrentHashMap.newKeySet();
+        this.context = Vertx.currentContext();
     }
 
     public JsHttpExchange get(String url) {
@@ -69,9 +144,122 @@ public class JsHttpClient {
     }
 
     public JsHttpExchange send(JsClientRequest request, BiConsumer<Object, Object> callback) {
-        final CompletableFuture<JsClientResponse> future = new CompletableFuture<>();
+        final CompletableFuture<JsClientResponse> future = call(request, callback, 0).future;
         futures.add(future);
-        final JsHttpExchange exchange = new JsHttpExchange(future);
+        return new JsHttpExchange(future);
+    }
+
+    public JsHttpExchanges all(List<?> requests) {
+        return all(requests, 0, null);
+    }
+
+    public JsHttpExchanges all(List<?> requests, BiConsumer<Object, Object> callback) {
+        return all(requests, 0, callback);
+    }
+
+    /**
+     * Sends all the calls at once, then calls back with their responses and their errors, in the order of the requests, once they
+     * are all done. A failed call does not fail the execution: its error is given at its index, and its response is null.
+     *
+     * @param requests URLs or {@link JsClientRequest}s.
+     * @param timeout time, in milliseconds, the calls are given to complete together, 0 to only apply their own timeouts.
+     */
+    public JsHttpExchanges all(List<?> requests, long timeout, BiConsumer<Object, Object> callback) {
+        final Context context = Vertx.currentContext();
+        final JsHttpExchanges exchanges = new JsHttpExchanges(
+            requests.stream().map(request -> call(toRequest(request), null, timeout).future).toList()
+        );
+
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        futures.add(done);
+        exchanges
+            .future()
+            .thenRun(() ->
+                runOnContext(context, () -> {
+                    try {
+                        if (callback != null && !cancelled) {
+                            callback.accept(exchanges.responses(), exchanges.errors());
+                        }
+                    } finally {
+                        done.complete(null);
+                    }
+                })
+            );
+        return exchanges;
+    }
+
+    public JsHttpExchange any(List<?> requests) {
+        return any(requests, 0, null);
+    }
+
+    public JsHttpExchange any(List<?> requests, BiConsumer<Object, Object> callback) {
+        return any(requests, 0, callback);
+    }
+
+    /**
+     * Sends all the calls at once, then calls back with the first response received, cancelling the other calls, or with the error
+     * of the last call failing when they all fail.
+     *
+     * @param requests URLs or {@link JsClientRequest}s, at least one.
+     * @param timeout time, in milliseconds, the calls are given to complete together, 0 to only apply their own timeouts.
+     */
+    public JsHttpExchange any(List<?> requests, long timeout, BiConsumer<Object, Object> callback) {
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("At least one request is required");
+        }
+
+        final Context context = Vertx.currentContext();
+        final List<PendingCall> calls = requests.stream().map(request -> call(toRequest(request), null, timeout)).toList();
+        final CompletableFuture<JsClientResponse> first = new CompletableFuture<>();
+        final AtomicInteger failures = new AtomicInteger();
+        for (PendingCall call : calls) {
+            call.future.whenComplete((response, error) -> {
+                if (error == null) {
+                    if (first.complete(response)) {
+                        calls.forEach(PendingCall::cancel);
+                    }
+                } else if (failures.incrementAndGet() == calls.size()) {
+                    first.completeExceptionally(error);
+                }
+            });
+        }
+
+        final CompletableFuture<JsClientResponse> done = new CompletableFuture<>();
+        futures.add(done);
+        first.whenComplete((response, error) ->
+            runOnContext(context, () -> {
+                try {
+                    if (callback != null && !cancelled) {
+                        callback.accept(response, error);
+                    }
+                } finally {
+                    if (error == null) {
+                        done.complete(response);
+                    } else {
+                        done.completeExceptionally(error);
+                    }
+                }
+            })
+        );
+        return new JsHttpExchange(done);
+    }
+
+    /**
+     * Sends the call without tracking it, its future being completed once its callback has been called.
+     *
+     * @param deadline time, in milliseconds, the call is given to complete on top of its own timeout, 0 for no limit.
+     */
+    private PendingCall call(JsClientRequest request, BiConsumer<Object, Object> callback, long deadline) {
+        final CompletableFuture<JsClientResponse> future = new CompletableFuture<>();
+        final Context context = Vertx.currentContext();
+
+        final String cacheKey = cache != null ? cache.key(request) : null;
+        final HttpResponseCache.Entry cached = cacheKey != null ? cache.get(cacheKey) : null;
+        if (cached != null && cached.isFresh()) {
+            final PendingCall hit = new PendingCall(request.getUrl(), callback, future, null);
+            completeOnContext(context, hit, cached.response(), null);
+            return hit;
+        }
 
         final URI uri;
         try {
@@ -82,13 +270,36 @@ public class JsHttpClient {
 
         RequestOptions requestOptions = new RequestOptions()
             .setAbsoluteURI(request.getUrl())
-            .setHeaders(request.getHeaders())
+            .setHeaders(cached != null ? conditionalHeaders(request.getHeaders(), cached) : request.getHeaders())
             .setMethod(HttpMethod.valueOf(request.getMethod()));
 
+        // The response is shared before being given to the callback of the script sending the call, which may alter it.
+        final String coalescingKey = coalescer != null ? coalescer.key(request) : null;
+        final CompletableFuture<JsClientResponse> shared = coalescingKey != null ? new CompletableFuture<>() : null;
+        final CompletableFuture<JsClientResponse> pending = shared != null ? coalescer.join(coalescingKey, shared) : null;
+        if (pending != null) {
+            final PendingCall follower = new PendingCall(request.getUrl(), callback, future, null);
+            follower.expireAfter(timeout(request, deadline), context);
+            pending.whenComplete((response, error) ->
+                completeOnContext(context, follower, response != null ? response.copy() : null, error)
+            );
+            return follower;
+        }
+
+        final PendingCall pendingCall = new PendingCall(request.getUrl(), callback, future, shared);
+        final HttpClientMetrics.Call call = metrics.start();
+        pendingCall.expireAfter(timeout(request, deadline), context);
+
         Future<HttpClientRequest> futureRequest = httpClient.request(requestOptions);
-        futureRequest.onFailure(throwable -> handleError(callback, future, throwable));
+        futureRequest.onFailure(throwable -> handleError(pendingCall, call, throwable));
         futureRequest.onSuccess(httpClientRequest -> {
+            if (!pendingCall.connected(httpClientRequest)) {
+                call.ended();
+                return;
+            }
+
             // Connection is made, lets continue.
+            call.connected();
             final Future<HttpClientResponse> futureResponse;
 
             if (request.getPayload() != null) {
@@ -98,37 +309,384 @@ public class JsHttpClient {
             }
 
             futureResponse
-                .onSuccess(httpResponse -> handleSuccess(callback, future, httpResponse))
-                .onFailure(throwable -> handleError(callback, future, throwable));
+                .onSuccess(httpResponse -> handleSuccess(pendingCall, call, httpResponse, request, cacheKey, cached))
+                .onFailure(throwable -> handleError(pendingCall, call, throwable));
         });
 
-        return exchange;
+        return pendingCall;
+    }
+
+    /**
+     * @return the time, in milliseconds, the calls are given to complete when they do not have their own timeout, 0 for no limit.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the time, in milliseconds, the calls are given to complete, 0 for no limit. It applies to the calls without their own
+     * timeout, and bounds the timeout of the others.
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = Math.max(timeout, 0);
+    }
+
+    /**
+     * Cancels the calls still pending: their callbacks are not called anymore and the requests sent are reset. A call also awaited
+     * by identical calls of other executions keeps running for them.
+     */
+    public void cancel() {
+        cancelled = true;
+        pendingCalls.forEach(PendingCall::cancel);
+    }
+
+    /**
+     * Defers the callbacks of the calls answered from the cache, by an identical call or by the expiry of their timeout until
+     * {@link #scriptReturned()}, so that they never run in the middle of the script, even on a worker thread.
+     */
+    public void scriptStarted() {
+        synchronized (deferred) {
+            evaluating = true;
+        }
+    }
+
+    /**
+     * Runs the callbacks deferred while the script was being evaluated, on the Vert.x context of the execution, or on the current
+     * thread outside of Vert.x.
+     */
+    public void scriptReturned() {
+        final List<Runnable> callbacks;
+        synchronized (deferred) {
+            evaluating = false;
+            callbacks = new ArrayList<>(deferred);
+            deferred.clear();
+        }
+        callbacks.forEach(Runnable::run);
     }
 
     public void shutDown() throws ExecutionException, InterruptedException {
         CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
     }
 
-    private HttpClientResponse handleSuccess(
-        BiConsumer<Object, Object> callback,
-        CompletableFuture<JsClientResponse> future,
-        HttpClientResponse httpResponse
+    /**
+     * Completes once all the calls sent by the script are done, including the ones sent from the callbacks of other calls, or fails
+     * with the error of the first call which failed.
+     */
+    public Completable whenComplete() {
+        return Completable.defer(() -> {
+            final CompletableFuture<?>[] pending = futures.stream().filter(future -> !future.isDone()).toArray(CompletableFuture[]::new);
+            final CompletableFuture<?>[] failed = futures
+                .stream()
+                .filter(CompletableFuture::isCompletedExceptionally)
+                .toArray(CompletableFuture[]::new);
+
+            if (failed.length > 0) {
+                return Completable.fromCompletionStage(failed[0]);
+            }
+            if (pending.length == 0) {
+                return Completable.complete();
+            }
+            return Completable.fromCompletionStage(CompletableFuture.allOf(pending)).andThen(whenComplete());
+        });
+    }
+
+    /**
+     * @return the shortest of the timeout of the request, the timeout of the client and the deadline, 0 when none is set.
+     */
+    private long timeout(JsClientRequest request, long deadline) {
+        return LongStream.of(request.getTimeout(), timeout, deadline).filter(value -> value > 0).min().orElse(0);
+    }
+
+    private static JsClientRequest toRequest(Object request) {
+        if (request instanceof JsClientRequest clientRequest) {
+            return clientRequest;
+        }
+        if (request instanceof CharSequence url) {
+            return new JsClientRequest(url.toString());
+        }
+        throw new IllegalArgumentException("Expected a URL or a Request, got " + request);
+    }
+
+    /**
+     * Reads the body chunk by chunk, without decoding it, and resets the request as soon as it exceeds the maximum response size, or
+     * before reading it when its <code>Content-Length</code> already does.
+     */
+    private void handleSuccess(
+        PendingCall pendingCall,
+        HttpClientMetrics.Call call,
+        HttpClientResponse httpResponse,
+        JsClientRequest request,
+        String cacheKey,
+        HttpResponseCache.Entry cached
     ) {
-        return httpResponse.bodyHandler(buffer -> {
-            final JsClientResponse javascriptResponse = new JsClientResponse();
-            javascriptResponse.setStatus(httpResponse.statusCode());
-            javascriptResponse.setBody(buffer.toString());
+        if (maxResponseSize > 0 && contentLength(httpResponse) > maxResponseSize) {
+            rejectTooLarge(pendingCall, call, httpResponse);
+            return;
+        }
+
+        final Buffer content = Buffer.buffer();
+        final AtomicBoolean exceeded = new AtomicBoolean();
+        httpResponse.exceptionHandler(throwable -> handleError(pendingCall, call, throwable));
+        httpResponse.handler(chunk -> {
+            if (exceeded.get()) {
+                return;
+            }
+            if (maxResponseSize > 0 && (long) content.length() + chunk.length() > maxResponseSize) {
+                exceeded.set(true);
+                rejectTooLarge(pendingCall, call, httpResponse);
+            } else {
+                content.appendBuffer(chunk);
+            }
+        });
+        httpResponse.endHandler(ignored -> {
+            if (exceeded.get()) {
+                return;
+            }
+            call.ended();
+            final JsClientResponse javascriptResponse;
+            if (cached != null && httpResponse.statusCode() == 304) {
+                javascriptResponse = cache.revalidated(cacheKey, cached, httpResponse.headers());
+            } else {
+                javascriptResponse = new JsClientResponse();
+                javascriptResponse.setStatus(httpResponse.statusCode());
+                javascriptResponse.setContent(content);
+                javascriptResponse.setHeaders(httpResponse.headers());
+                if (cacheKey != null) {
+                    cache.store(cacheKey, request, javascriptResponse);
+                }
+            }
 
-            if (callback != null) {
-                callback.accept(javascriptResponse, null);
+            pendingCall.complete(javascriptResponse);
+        });
+    }
+
+    /**
+     * Completes a call answered from the cache or by an identical call asynchronously, like the callback of a response received from
+     * the server, so that it does not run in the middle of the script.
+     */
+    private void completeOnContext(Context context, PendingCall pendingCall, JsClientResponse javascriptResponse, Throwable error) {
+        runOnContext(context, () -> {
+            if (error == null) {
+                pendingCall.complete(javascriptResponse);
+            } else {
+                pendingCall.fail(error, error);
             }
+        });
+    }
+
+    /**
+     * Runs on the Vert.x context the call has been sent from, else on the context of the execution, once the script has returned.
+     */
+    private void runOnContext(Context context, Runnable runnable) {
+        final Context target = context != null ? context : this.context;
+        synchronized (deferred) {
+            if (evaluating) {
+                deferred.add(() -> dispatch(target, runnable));
+                return;
+            }
+        }
+        dispatch(target, runnable);
+    }
+
+    private static void dispatch(Context context, Runnable runnable) {
+        if (context != null) {
+            context.runOnContext(ignored -> runnable.run());
+        } else {
+            runnable.run();
+        }
+    }
 
-            future.complete(javascriptResponse);
+    /**
+     * @return the headers of the request, plus the validators of the cached response, without altering the headers of the script.
+     */
+    private static MultiMap conditionalHeaders(MultiMap requestHeaders, HttpResponseCache.Entry cached) {
+        final MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        if (requestHeaders != null) {
+            headers.addAll(requestHeaders);
+        }
+        if (cached.etag() != null) {
+            headers.set(HttpHeaders.IF_NONE_MATCH, cached.etag());
+        }
+        if (cached.lastModified() != null) {
+            headers.set(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified());
+        }
+        return headers;
+    }
+
+    private void rejectTooLarge(PendingCall pendingCall, HttpClientMetrics.Call call, HttpClientResponse httpResponse) {
+        call.ended();
+        httpResponse.request().reset();
+        final HttpResponseTooLargeException error = new HttpResponseTooLargeException(pendingCall.url, maxResponseSize);
+        pendingCall.fail(error, error);
+    }
+
+    private static ScheduledThreadPoolExecutor newTimers() {
+        final ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "gravitee-javascript-http-timers");
+            thread.setDaemon(true);
+            return thread;
         });
+        timers.setRemoveOnCancelPolicy(true);
+        return timers;
     }
 
-    private void handleError(BiConsumer<Object, Object> callback, CompletableFuture<JsClientResponse> future, Throwable throwable) {
-        callback.accept(null, throwable.getCause());
-        future.completeExceptionally(throwable.getCause());
+    /**
+     * @return the number of calls whose timer is running.
+     */
+    static int pendingTimers() {
+        return TIMERS.getQueue().size();
+    }
+
+    private static long contentLength(HttpClientResponse httpResponse) {
+        try {
+            final String contentLength = httpResponse.getHeader(HttpHeaders.CONTENT_LENGTH);
+            return contentLength != null ? Long.parseLong(contentLength.trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void handleError(PendingCall pendingCall, HttpClientMetrics.Call call, Throwable throwable) {
+        call.ended();
+        pendingCall.fail(throwable.getCause(), throwable.getCause() != null ? throwable.getCause() : throwable);
+    }
+
+    /**
+     * A call of the script, settled once: by its response, its failure, the expiry of its timeout or its cancellation, whichever
+     * comes first. The future is completed even if the callback fails, so that the execution does not wait for it forever.
+     */
+    private final class PendingCall {
+
+        private final String url;
+        private final BiConsumer<Object, Object> callback;
+        private final CompletableFuture<JsClientResponse> future;
+
+        /**
+         * Awaited by the identical calls of other executions, null when the call is not coalesced.
+         */
+        private final CompletableFuture<JsClientResponse> shared;
+
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private volatile HttpClientRequest request;
+        private volatile boolean aborted;
+        private volatile ScheduledFuture<?> expiry;
+
+        private PendingCall(
+            String url,
+            BiConsumer<Object, Object> callback,
+            CompletableFuture<JsClientResponse> future,
+            CompletableFuture<JsClientResponse> shared
+        ) {
+            this.url = url;
+            this.callback = callback;
+            this.future = future;
+            this.shared = shared;
+            pendingCalls.add(this);
+        }
+
+        /**
+         * Fails the call with a {@link TimeoutException} once {@code timeout} milliseconds have elapsed, on the Vert.x context it has
+         * been sent from. Does nothing when {@code timeout} is 0.
+         */
+        private void expireAfter(long timeout, Context context) {
+            if (timeout > 0) {
+                expiry = TIMERS.schedule(() -> runOnContext(context, () -> expire(timeout)), timeout, TimeUnit.MILLISECONDS);
+                releaseExpiry();
+            }
+        }
+
+        /**
+         * @return false when the call has been aborted while waiting for its connection, the request must not be sent.
+         */
+        private boolean connected(HttpClientRequest request) {
+            this.request = request;
+            if (aborted) {
+                request.reset();
+                return false;
+            }
+            return true;
+        }
+
+        private void complete(JsClientResponse javascriptResponse) {
+            if (shared != null) {
+                shared.complete(javascriptResponse.copy());
+                releaseExpiry();
+            }
+            if (settle()) {
+                try {
+                    if (callback != null) {
+                        callback.accept(javascriptResponse, null);
+                    }
+                } finally {
+                    future.complete(javascriptResponse);
+                }
+            }
+        }
+
+        private void fail(Throwable callbackError, Throwable error) {
+            if (shared != null) {
+                shared.completeExceptionally(error);
+                releaseExpiry();
+            }
+            if (settle()) {
+                try {
+                    if (callback != null) {
+                        callback.accept(null, callbackError);
+                    }
+                } finally {
+                    future.completeExceptionally(error);
+                }
+            }
+        }
+
+        private void expire(long timeout) {
+            if (future.isDone() && (shared == null || shared.isDone())) {
+                return;
+            }
+            final TimeoutException error = new TimeoutException("HTTP call to " + url + " timed out after " + timeout + " ms");
+            abort();
+            fail(error, error);
+        }
+
+        private void cancel() {
+            if (!settle()) {
+                return;
+            }
+            future.completeExceptionally(new CancellationException("HTTP call to " + url + " has been cancelled"));
+            if (shared == null) {
+                abort();
+            }
+        }
+
+        /**
+         * Cancels the timer once the call is done, for the script and for the identical calls awaiting it. A coalesced call cancelled by
+         * its script keeps its timer, which still bounds the call for the others.
+         */
+        private void releaseExpiry() {
+            final ScheduledFuture<?> scheduled = expiry;
+            if (scheduled != null && settled.get() && (shared == null || shared.isDone())) {
+                scheduled.cancel(false);
+            }
+        }
+
+        /**
+         * Resets the request, its failure ends the call on its own Vert.x context.
+         */
+        private void abort() {
+            aborted = true;
+            final HttpClientRequest sent = request;
+            if (sent != null) {
+                sent.reset();
+            }
+        }
+
+        private boolean settle() {
+            if (!settled.compareAndSet(false, true)) {
+                return false;
+            }
+            pendingCalls.remove(this);
+            releaseExpiry();
+            return true;
+        }
     }
 }
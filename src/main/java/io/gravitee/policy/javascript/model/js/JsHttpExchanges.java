@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The calls sent at once by {@link JsHttpClient#all(List, long, java.util.function.BiConsumer)}. Their responses and errors are
+ * given in the order of the requests.
+ *
+ * @author GraviteeSource Team
+ */
+public class JsHttpExchanges {
+
+    private final List<CompletableFuture<JsClientResponse>> calls;
+    private final CompletableFuture<Void> future;
+
+    JsHttpExchanges(List<CompletableFuture<JsClientResponse>> calls) {
+        this.calls = calls;
+        this.future = CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).exceptionally(error -> null);
+    }
+
+    /**
+     * Waits for all the calls to be done, whether they succeed or fail.
+     */
+    public void waitForComplete() throws Exception {
+        future.get();
+    }
+
+    public boolean isComplete() {
+        return future.isDone();
+    }
+
+    public boolean isSuccess() {
+        return isComplete() && calls.stream().noneMatch(CompletableFuture::isCompletedExceptionally);
+    }
+
+    /**
+     * @return the response of each call, null for the calls failed or still pending.
+     */
+    public JsClientResponse[] responses() {
+        return calls
+            .stream()
+            .map(call -> call.isDone() && !call.isCompletedExceptionally() ? call.join() : null)
+            .toArray(JsClientResponse[]::new);
+    }
+
+    /**
+     * @return the error of each call, null for the calls succeeded or still pending.
+     */
+    public Throwable[] errors() {
+        return calls.stream().map(call -> call.handle((response, error) -> error).getNow(null)).toArray(Throwable[]::new);
+    }
+
+    CompletableFuture<Void> future() {
+        return future;
+    }
+}
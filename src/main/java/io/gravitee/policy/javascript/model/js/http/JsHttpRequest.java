@@ -23,7 +23,9 @@ import io.gravitee.gateway.api.http.HttpHeaders;
 import io.gravitee.gateway.reactive.api.context.TlsSession;
 import io.gravitee.gateway.reactive.api.context.http.HttpBaseRequest;
 import io.gravitee.gateway.reactive.api.context.http.HttpPlainRequest;
+import io.gravitee.policy.javascript.model.js.JsByteView;
 import io.gravitee.policy.javascript.model.js.JsHttpHeaders;
+import io.gravitee.policy.javascript.model.js.json.JsJsonNode;
 import lombok.Getter;
 
 public class JsHttpRequest implements HttpBaseRequest {
@@ -31,11 +33,21 @@ public class JsHttpRequest implements HttpBaseRequest {
     @Getter
     private final HttpPlainRequest request;
 
-    private final String content;
+    private final Buffer buffer;
+
+    /**
+     * The buffer decoded on first access, scripts ignoring the content do not pay for its decoding.
+     */
+    private String content;
+
+    /**
+     * The buffer parsed on first access, see {@link JsJsonNode}.
+     */
+    private Object json;
 
     public JsHttpRequest(HttpPlainRequest request, Buffer buffer) {
         this.request = request;
-        this.content = buffer != null ? buffer.toString() : null;
+        this.buffer = buffer;
     }
 
     public JsHttpRequest(HttpPlainRequest request) {
@@ -43,12 +55,45 @@ public class JsHttpRequest implements HttpBaseRequest {
     }
 
     public String getContent() {
-        if (content == null) {
+        if (buffer == null) {
             throw new UnsupportedOperationException("Accessing request content must be enabled in the policy configuration");
         }
+        if (content == null) {
+            content = buffer.toString();
+        }
         return content;
     }
 
+    /**
+     * @return whether the value is the content itself, as returned by {@link #getContent()}, so that it does not need to be rewritten.
+     */
+    public boolean isContent(Object value) {
+        return value != null && (value == buffer || value == content);
+    }
+
+    /**
+     * @return the content parsed as JSON, updated in place by the script and serialised only if modified.
+     */
+    public Object getJson() {
+        if (buffer == null) {
+            throw new UnsupportedOperationException("Accessing request content must be enabled in the policy configuration");
+        }
+        if (json == null) {
+            json = JsJsonNode.parse(buffer);
+        }
+        return json;
+    }
+
+    /**
+     * @return a read-only view over the bytes of the content, nothing being decoded nor copied.
+     */
+    public JsByteView getContentView() {
+        if (buffer == null) {
+            throw new UnsupportedOperationException("Accessing request content must be enabled in the policy configuration");
+        }
+        return JsByteView.of(buffer);
+    }
+
     @Override
     public String id() {
         return request.id();
@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.openjdk.nashorn.api.scripting.AbstractJSObject;
+
+/**
+ * JSON array of a content, see {@link JsJsonNode}. Besides <code>length</code> and the indexes, only <code>push</code> is available,
+ * the other array functions requiring the array to be parsed with <code>JSON.parse</code>.
+ *
+ * @author GraviteeSource Team
+ */
+public class JsJsonArray extends JsJsonNode {
+
+    /**
+     * Shared by all the arrays, the array being the <code>this</code> of the call.
+     */
+    private static final AbstractJSObject PUSH = new AbstractJSObject() {
+        @Override
+        public boolean isFunction() {
+            return true;
+        }
+
+        @Override
+        public Object call(Object thiz, Object... args) {
+            if (!(thiz instanceof JsJsonArray array)) {
+                throw new UnsupportedOperationException("push must be called on a JSON array");
+            }
+            for (Object arg : args) {
+                array.setSlot(array.node.size(), arg);
+            }
+            return array.node.size();
+        }
+    };
+
+    private final ArrayNode node;
+
+    JsJsonArray(Document document, ArrayNode node) {
+        super(document);
+        this.node = node;
+    }
+
+    @Override
+    JsonNode node() {
+        return node;
+    }
+
+    @Override
+    public Object getMember(String name) {
+        if ("length".equals(name)) {
+            return node.size();
+        }
+        if ("push".equals(name)) {
+            return PUSH;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasMember(String name) {
+        return "length".equals(name) || "push".equals(name);
+    }
+
+    @Override
+    public void setMember(String name, Object value) {
+        if (!"length".equals(name) || !(value instanceof Number length)) {
+            throw new UnsupportedOperationException("Only the length of a JSON array can be set");
+        }
+        while (node.size() > Math.max(0, length.intValue())) {
+            node.remove(node.size() - 1);
+            modified();
+        }
+    }
+
+    @Override
+    public Object getSlot(int index) {
+        return toJs(document, node.get(index));
+    }
+
+    @Override
+    public boolean hasSlot(int index) {
+        return index >= 0 && index < node.size();
+    }
+
+    @Override
+    public void setSlot(int index, Object value) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Invalid JSON array index: " + index);
+        }
+        final JsonNode element = toNode(value);
+        while (node.size() < index) {
+            node.add(NullNode.getInstance());
+        }
+        if (index < node.size()) {
+            node.set(index, element != null ? element : NullNode.getInstance());
+        } else {
+            node.add(element != null ? element : NullNode.getInstance());
+        }
+        modified();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        final Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < node.size(); i++) {
+            keys.add(String.valueOf(i));
+        }
+        return keys;
+    }
+
+    @Override
+    public Collection<Object> values() {
+        final List<Object> values = new ArrayList<>(node.size());
+        node.elements().forEachRemaining(element -> values.add(toJs(document, element)));
+        return values;
+    }
+
+    @Override
+    public boolean isArray() {
+        return true;
+    }
+
+    @Override
+    public String getClassName() {
+        return "Array";
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js.json;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.model.js.JsContent;
+import java.io.IOException;
+import org.openjdk.nashorn.api.scripting.AbstractJSObject;
+import org.openjdk.nashorn.api.scripting.ScriptObjectMirror;
+
+/**
+ * Object or array of a JSON content, exposed to the scripts as <code>request.json</code>, <code>response.json</code> and
+ * <code>message.json</code>.
+ *
+ * The content is parsed into a Jackson tree on first access, then read and updated in place by the script: only the values it reads are
+ * converted to Javascript values. Returned as the new content, the tree is serialised only if it has been modified, the original bytes
+ * being kept otherwise.
+ *
+ * Missing members are read as <code>null</code>. Javascript values are copied into the tree when assigned: functions and
+ * <code>undefined</code> remove the member, as <code>JSON.stringify</code> omits them.
+ *
+ * @author GraviteeSource Team
+ */
+public abstract class JsJsonNode extends AbstractJSObject implements JsContent {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    /**
+     * Largest integer a double holds exactly, the integral numbers below being written without fraction.
+     */
+    private static final double MAX_SAFE_INTEGER = 9007199254740991d;
+
+    final Document document;
+
+    JsJsonNode(Document document) {
+        this.document = document;
+    }
+
+    /**
+     * @return the root of the JSON content, as a {@link JsJsonNode} for an object or an array, null for an empty content.
+     * @throws IllegalArgumentException if the content is not valid JSON.
+     */
+    public static Object parse(Buffer buffer) {
+        final JsonNode root;
+        try {
+            root = MAPPER.readTree(buffer.getBytes());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON content: " + e.getMessage(), e);
+        }
+        return root == null ? null : toJs(new Document(buffer, root), root);
+    }
+
+    abstract JsonNode node();
+
+    /**
+     * @return whether the content has been modified since it has been parsed.
+     */
+    public boolean isModified() {
+        return document.modified;
+    }
+
+    @Override
+    public Buffer toBuffer() {
+        if (!document.modified && node() == document.root) {
+            return document.source;
+        }
+        try {
+            return Buffer.buffer(MAPPER.writeValueAsBytes(node()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize JSON content", e);
+        }
+    }
+
+    @Override
+    public Object getDefaultValue(Class<?> hint) {
+        return toString();
+    }
+
+    @Override
+    public String toString() {
+        return node().toString();
+    }
+
+    void modified() {
+        document.modified = true;
+    }
+
+    static Object toJs(Document document, JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        }
+        if (node.isObject()) {
+            return new JsJsonObject(document, (ObjectNode) node);
+        }
+        if (node.isArray()) {
+            return new JsJsonArray(document, (ArrayNode) node);
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        if (node.isInt()) {
+            return node.intValue();
+        }
+        if (node.isNumber()) {
+            return node.doubleValue();
+        }
+        return node.asText();
+    }
+
+    /**
+     * @return the value as a JSON node, null for the values omitted from a JSON content.
+     */
+    static JsonNode toNode(Object value) {
+        if (value == null) {
+            return NODES.nullNode();
+        }
+        if (ScriptObjectMirror.isUndefined(value)) {
+            return null;
+        }
+        if (value instanceof JsJsonNode json) {
+            return json.node().deepCopy();
+        }
+        if (value instanceof CharSequence text) {
+            return NODES.textNode(text.toString());
+        }
+        if (value instanceof Boolean bool) {
+            return NODES.booleanNode(bool);
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return NODES.numberNode(((Number) value).intValue());
+        }
+        if (value instanceof Long number) {
+            return NODES.numberNode(number);
+        }
+        if (value instanceof Number number) {
+            return toNode(number.doubleValue());
+        }
+        if (value instanceof ScriptObjectMirror mirror) {
+            return toNode(mirror);
+        }
+        return NODES.textNode(value.toString());
+    }
+
+    private static JsonNode toNode(double number) {
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return NODES.nullNode();
+        }
+        if (number == Math.rint(number) && Math.abs(number) <= MAX_SAFE_INTEGER) {
+            return NODES.numberNode((long) number);
+        }
+        return NODES.numberNode(number);
+    }
+
+    private static JsonNode toNode(ScriptObjectMirror mirror) {
+        if (mirror.isFunction()) {
+            return null;
+        }
+        if (mirror.isArray()) {
+            final ArrayNode array = NODES.arrayNode();
+            final int length = ((Number) mirror.getMember("length")).intValue();
+            for (int i = 0; i < length; i++) {
+                final JsonNode element = toNode(mirror.getSlot(i));
+                array.add(element != null ? element : NODES.nullNode());
+            }
+            return array;
+        }
+
+        final ObjectNode object = NODES.objectNode();
+        for (String key : mirror.keySet()) {
+            final JsonNode member = toNode(mirror.getMember(key));
+            if (member != null) {
+                object.set(key, member);
+            }
+        }
+        return object;
+    }
+
+    static final class Document {
+
+        private final Buffer source;
+        private final JsonNode root;
+        private boolean modified;
+
+        Document(Buffer source, JsonNode root) {
+            this.source = source;
+            this.root = root;
+        }
+    }
+}
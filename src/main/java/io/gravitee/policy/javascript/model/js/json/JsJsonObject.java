@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * JSON object of a content, see {@link JsJsonNode}.
+ *
+ * @author GraviteeSource Team
+ */
+public class JsJsonObject extends JsJsonNode {
+
+    private final ObjectNode node;
+
+    JsJsonObject(Document document, ObjectNode node) {
+        super(document);
+        this.node = node;
+    }
+
+    @Override
+    JsonNode node() {
+        return node;
+    }
+
+    @Override
+    public Object getMember(String name) {
+        return toJs(document, node.get(name));
+    }
+
+    @Override
+    public boolean hasMember(String name) {
+        return node.has(name);
+    }
+
+    @Override
+    public void setMember(String name, Object value) {
+        final JsonNode member = toNode(value);
+        if (member == null) {
+            removeMember(name);
+        } else {
+            node.set(name, member);
+            modified();
+        }
+    }
+
+    @Override
+    public void removeMember(String name) {
+        if (node.remove(name) != null) {
+            modified();
+        }
+    }
+
+    @Override
+    public Set<String> keySet() {
+        final Set<String> keys = new LinkedHashSet<>();
+        node.fieldNames().forEachRemaining(keys::add);
+        return keys;
+    }
+
+    @Override
+    public Collection<Object> values() {
+        final List<Object> values = new ArrayList<>(node.size());
+        node.elements().forEachRemaining(element -> values.add(toJs(document, element)));
+        return values;
+    }
+
+    @Override
+    public String getClassName() {
+        return "Object";
+    }
+}
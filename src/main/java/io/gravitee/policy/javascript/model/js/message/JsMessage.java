@@ -18,7 +18,10 @@ package io.gravitee.policy.javascript.model.js.message;
 import io.gravitee.gateway.api.buffer.Buffer;
 import io.gravitee.gateway.api.http.HttpHeaders;
 import io.gravitee.gateway.reactive.api.message.Message;
+import io.gravitee.policy.javascript.PolicyResult;
+import io.gravitee.policy.javascript.model.js.JsByteView;
 import io.gravitee.policy.javascript.model.js.JsHttpHeaders;
+import io.gravitee.policy.javascript.model.js.json.JsJsonNode;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
@@ -28,10 +31,24 @@ public class JsMessage implements Message {
 
     private final Message message;
 
+    /**
+     * Result of the script for this message, bound as <code>result</code> when the message is processed alone.
+     */
+    private final PolicyResult result = new PolicyResult();
+
+    /**
+     * The content parsed on first access, see {@link JsJsonNode}.
+     */
+    private Object json;
+
     public JsMessage(Message message) {
         this.message = message;
     }
 
+    public PolicyResult getResult() {
+        return result;
+    }
+
     @Override
     public String id() {
         return message.id();
@@ -118,6 +135,23 @@ public class JsMessage implements Message {
         return message.content() == null ? new byte[0] : message.content().getBytes();
     }
 
+    /**
+     * @return the content parsed as JSON, updated in place by the script and serialised only if modified.
+     */
+    public Object getJson() {
+        if (json == null && message.content() != null) {
+            json = JsJsonNode.parse(message.content());
+        }
+        return json;
+    }
+
+    /**
+     * @return a read-only view over the bytes of the content, nothing being decoded nor copied.
+     */
+    public JsByteView getContentView() {
+        return message.content() == null ? JsByteView.empty() : JsByteView.of(message.content());
+    }
+
     @Override
     public Message content(Buffer content) {
         throw new UnsupportedOperationException("Setting content must be done returning a value and setting `overrideContent` to true");
@@ -15,14 +15,20 @@
  */
 package io.gravitee.policy.v3.javascript;
 
-import static io.gravitee.policy.javascript.JavascriptInitializer.JAVASCRIPT_ENGINE;
+import static io.gravitee.policy.javascript.JavascriptInitializer.SCRIPT_CACHE;
+import static io.gravitee.policy.javascript.JavascriptInitializer.SCRIPT_ENGINES;
+import static io.gravitee.policy.javascript.JavascriptInitializer.SCRIPT_WORKERS;
 import static io.gravitee.policy.javascript.eval.ScriptContextBindings.RESULT_VARIABLE_NAME;
 import static io.gravitee.policy.javascript.eval.ScriptContextFactory.createContentAwareScriptContext;
+import static io.gravitee.policy.javascript.eval.ScriptContextFactory.release;
 
+import io.gravitee.common.http.HttpStatusCode;
 import io.gravitee.gateway.api.ExecutionContext;
 import io.gravitee.gateway.api.Request;
 import io.gravitee.gateway.api.Response;
 import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
 import io.gravitee.gateway.api.http.stream.TransformableRequestStreamBuilder;
 import io.gravitee.gateway.api.http.stream.TransformableResponseStreamBuilder;
 import io.gravitee.gateway.api.stream.ReadWriteStream;
@@ -33,14 +39,18 @@ import io.gravitee.policy.api.annotations.OnRequestContent;
 import io.gravitee.policy.api.annotations.OnResponse;
 import io.gravitee.policy.api.annotations.OnResponseContent;
 import io.gravitee.policy.javascript.PolicyResult;
+import io.gravitee.policy.javascript.configuration.ExecutionMode;
 import io.gravitee.policy.javascript.configuration.JavascriptPolicyConfiguration;
+import io.gravitee.policy.javascript.configuration.MaxContentSizeAction;
 import io.gravitee.policy.javascript.eval.ScriptEvaluator;
+import io.gravitee.policy.javascript.eval.ScriptTimeoutException;
 import io.gravitee.policy.v3.javascript.model.JsContentAwareRequest;
 import io.gravitee.policy.v3.javascript.model.JsContentAwareResponse;
 import io.gravitee.policy.v3.javascript.model.JsExecutionContext;
 import io.vertx.core.Vertx;
 import javax.script.ScriptContext;
 import lombok.CustomLog;
+import org.apache.commons.lang3.math.NumberUtils;
 
 /**
  * @author Jeoffrey HAEYAERT (jeoffrey.haeyaert at graviteesource.com)
@@ -49,12 +59,33 @@ import lombok.CustomLog;
 @CustomLog
 public class JavascriptPolicy {
 
+    private static final String EXECUTION_TIMEOUT_KEY = "JAVASCRIPT_EXECUTION_TIMEOUT";
+    private static final String CONTENT_TOO_LARGE_KEY = "JAVASCRIPT_CONTENT_TOO_LARGE";
+
     protected final JavascriptPolicyConfiguration configuration;
     protected final ScriptEvaluator scriptEvaluator;
 
     public JavascriptPolicy(JavascriptPolicyConfiguration configuration) {
         this.configuration = configuration;
-        this.scriptEvaluator = new ScriptEvaluator(() -> JAVASCRIPT_ENGINE);
+        this.scriptEvaluator = new ScriptEvaluator(
+            () -> SCRIPT_ENGINES,
+            SCRIPT_CACHE,
+            usesWorkers(configuration) ? SCRIPT_WORKERS : null,
+            configuration.getMaxExecutionTime(),
+            configuration.getHttpCallTimeout()
+        );
+        this.scriptEvaluator.precompile(configuration.getScripts());
+    }
+
+    /**
+     * The messages evaluated concurrently are evaluated on the workers whatever the execution mode, the scripts of the INLINE mode would
+     * otherwise run one after the other on the event loop.
+     */
+    private static boolean usesWorkers(JavascriptPolicyConfiguration configuration) {
+        return (
+            configuration.getExecutionMode() == ExecutionMode.WORKER ||
+            (configuration.getMessageConcurrency() > 1 && !configuration.isMessageBatchEnabled())
+        );
     }
 
     @OnRequest
@@ -77,7 +108,7 @@ public class JavascriptPolicy {
         String script = configuration.getOnResponseContentScript();
 
         if (script != null && !script.trim().isEmpty()) {
-            return TransformableResponseStreamBuilder.on(response)
+            final ReadWriteStream<Buffer> stream = TransformableResponseStreamBuilder.on(response)
                 .chain(policyChain)
                 .transform(buffer -> {
                     try {
@@ -114,6 +145,8 @@ public class JavascriptPolicy {
                     return null;
                 })
                 .build();
+
+            return limitContentSize(stream, response.headers(), policyChain, HttpStatusCode.INTERNAL_SERVER_ERROR_500);
         }
 
         return null;
@@ -129,7 +162,7 @@ public class JavascriptPolicy {
         String script = configuration.getOnRequestContentScript();
 
         if (script != null && !script.trim().isEmpty()) {
-            return TransformableRequestStreamBuilder.on(request)
+            final ReadWriteStream<Buffer> stream = TransformableRequestStreamBuilder.on(request)
                 .chain(policyChain)
                 .transform(buffer -> {
                     try {
@@ -167,11 +200,48 @@ public class JavascriptPolicy {
                     return null;
                 })
                 .build();
+
+            return limitContentSize(stream, request.headers(), policyChain, HttpStatusCode.REQUEST_ENTITY_TOO_LARGE_413);
         }
 
         return null;
     }
 
+    /**
+     * Bounds the content aggregated by the stream when a maximum content size is configured. A content declaring a larger length is
+     * not transformed at all when it has to be passed through.
+     */
+    private ReadWriteStream<Buffer> limitContentSize(
+        ReadWriteStream<Buffer> stream,
+        HttpHeaders headers,
+        PolicyChain policyChain,
+        int status
+    ) {
+        final long maxContentSize = configuration.getMaxContentSize();
+        if (maxContentSize <= 0) {
+            return stream;
+        }
+
+        final long declaredLength = NumberUtils.toLong(headers.get(HttpHeaderNames.CONTENT_LENGTH), -1);
+        final boolean passThrough = configuration.getMaxContentSizeAction() == MaxContentSizeAction.PASS_THROUGH;
+        if (passThrough && declaredLength > maxContentSize) {
+            return null;
+        }
+
+        return new MaxContentSizeStream(
+            stream,
+            maxContentSize,
+            declaredLength,
+            passThrough,
+            policyChain,
+            io.gravitee.policy.api.PolicyResult.failure(
+                CONTENT_TOO_LARGE_KEY,
+                status,
+                "Content exceeds the maximum size of " + maxContentSize + " bytes"
+            )
+        );
+    }
+
     private String executeScript(
         Request request,
         Response response,
@@ -197,10 +267,22 @@ public class JavascriptPolicy {
                 })
                 .onComplete(event -> {
                     if (event.failed()) {
+                        release(scriptContext);
                         log.error("Unable to run Javascript script", event.cause());
-                        policyChain.failWith(io.gravitee.policy.api.PolicyResult.failure(event.cause().getMessage()));
+                        if (event.cause() instanceof ScriptTimeoutException) {
+                            policyChain.failWith(
+                                io.gravitee.policy.api.PolicyResult.failure(
+                                    EXECUTION_TIMEOUT_KEY,
+                                    HttpStatusCode.INTERNAL_SERVER_ERROR_500,
+                                    event.cause().getMessage()
+                                )
+                            );
+                        } else {
+                            policyChain.failWith(io.gravitee.policy.api.PolicyResult.failure(event.cause().getMessage()));
+                        }
                     } else {
                         PolicyResult result = (PolicyResult) scriptContext.getAttribute(RESULT_VARIABLE_NAME);
+                        release(scriptContext);
 
                         if (result.getState() == PolicyResult.State.SUCCESS) {
                             policyChain.doNext(request, response);
@@ -245,7 +327,12 @@ public class JavascriptPolicy {
         } catch (Exception e) {
             result.setState(PolicyResult.State.FAILURE);
             result.setError(e.getMessage());
+            if (e instanceof ScriptTimeoutException) {
+                result.setKey(EXECUTION_TIMEOUT_KEY);
+            }
             throw new PolicyFailureException(result);
+        } finally {
+            release(scriptContext);
         }
 
         if (result.getState() == PolicyResult.State.FAILURE) {
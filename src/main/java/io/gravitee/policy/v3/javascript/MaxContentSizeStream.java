@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.v3.javascript;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.stream.BufferedReadWriteStream;
+import io.gravitee.gateway.api.stream.ReadWriteStream;
+import io.gravitee.gateway.api.stream.SimpleReadWriteStream;
+import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.api.PolicyResult;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the chunks of a content until it ends before handing them to the transforming stream, so that no more than
+ * {@code maxContentSize} bytes are aggregated. A larger content fails the policy chain as soon as the limit is exceeded, or is passed
+ * through untransformed.
+ *
+ * @author GraviteeSource Team
+ */
+class MaxContentSizeStream extends BufferedReadWriteStream {
+
+    private final ReadWriteStream<Buffer> transformer;
+    private final long maxContentSize;
+    private final long declaredLength;
+    private final boolean passThrough;
+    private final PolicyChain policyChain;
+    private final PolicyResult failure;
+    private final List<Buffer> chunks = new ArrayList<>();
+    private long size;
+    private boolean exceeded;
+
+    /**
+     * @param declaredLength the length declared by the headers, -1 if unknown. A larger length is rejected on the first chunk.
+     */
+    MaxContentSizeStream(
+        ReadWriteStream<Buffer> transformer,
+        long maxContentSize,
+        long declaredLength,
+        boolean passThrough,
+        PolicyChain policyChain,
+        PolicyResult failure
+    ) {
+        this.transformer = transformer;
+        this.maxContentSize = maxContentSize;
+        this.declaredLength = declaredLength;
+        this.passThrough = passThrough;
+        this.policyChain = policyChain;
+        this.failure = failure;
+        transformer.bodyHandler(super::write);
+        transformer.endHandler(ignored -> super.end());
+    }
+
+    @Override
+    public SimpleReadWriteStream<Buffer> write(Buffer chunk) {
+        if (exceeded) {
+            if (passThrough) {
+                super.write(chunk);
+            }
+            return this;
+        }
+
+        chunks.add(chunk);
+        size += chunk.length();
+        if (size > maxContentSize || declaredLength > maxContentSize) {
+            exceeded = true;
+            if (passThrough) {
+                chunks.forEach(super::write);
+            } else {
+                policyChain.streamFailWith(failure);
+            }
+            chunks.clear();
+        }
+        return this;
+    }
+
+    @Override
+    public void end() {
+        if (!exceeded) {
+            chunks.forEach(transformer::write);
+            chunks.clear();
+            transformer.end();
+        } else if (passThrough) {
+            super.end();
+        }
+    }
+}
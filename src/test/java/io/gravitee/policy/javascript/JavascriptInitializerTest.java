@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.gravitee.policy.api.PolicyContextProvider;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.env.Environment;
+
+@ExtendWith(MockitoExtension.class)
+class JavascriptInitializerTest {
+
+    private final JavascriptInitializer javascriptInitializer = new JavascriptInitializer();
+
+    @Mock
+    private PolicyContextProvider policyContextProvider;
+
+    @Mock
+    private Vertx vertx;
+
+    @Mock
+    private Environment environment;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        // Leaves the initializer activated as the other tests expect it, without Vert.x nor environment.
+        javascriptInitializer.onDeactivation();
+        javascriptInitializer.setPolicyContextProvider(mock(PolicyContextProvider.class));
+        javascriptInitializer.onActivation();
+    }
+
+    @Test
+    void should_stop_metrics_log_and_workers_once_deactivated() throws Exception {
+        when(policyContextProvider.getComponent(Vertx.class)).thenReturn(vertx);
+        when(policyContextProvider.getComponent(Environment.class)).thenReturn(environment);
+        when(environment.getProperty(anyString(), any(Class.class), any())).thenAnswer(invocation -> invocation.getArgument(2));
+        when(vertx.setPeriodic(anyLong(), any())).thenReturn(42L);
+
+        javascriptInitializer.onDeactivation();
+        javascriptInitializer.setPolicyContextProvider(policyContextProvider);
+        javascriptInitializer.onActivation();
+        var workers = JavascriptInitializer.SCRIPT_WORKERS;
+
+        javascriptInitializer.onDeactivation();
+
+        verify(vertx).cancelTimer(42L);
+        assertThat(workers.isShutdown()).isTrue();
+    }
+
+    @Test
+    void should_initialize_again_once_activated_after_deactivation() throws Exception {
+        javascriptInitializer.onActivation();
+        var workers = JavascriptInitializer.SCRIPT_WORKERS;
+
+        javascriptInitializer.onDeactivation();
+        javascriptInitializer.onActivation();
+
+        assertThat(JavascriptInitializer.SCRIPT_WORKERS).isNotSameAs(workers);
+        assertThat(JavascriptInitializer.SCRIPT_WORKERS.isShutdown()).isFalse();
+    }
+}
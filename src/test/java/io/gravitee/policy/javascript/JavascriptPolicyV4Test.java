@@ -18,6 +18,7 @@ package io.gravitee.policy.javascript;
 import static io.gravitee.common.http.HttpStatusCode.BAD_REQUEST_400;
 import static io.gravitee.common.http.HttpStatusCode.INTERNAL_SERVER_ERROR_500;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -30,18 +31,29 @@ import io.gravitee.gateway.reactive.api.context.http.HttpResponse;
 import io.gravitee.gateway.reactive.api.message.DefaultMessage;
 import io.gravitee.gateway.reactive.api.message.Message;
 import io.gravitee.gateway.reactive.core.context.interruption.InterruptionFailureException;
+import io.gravitee.policy.javascript.configuration.ContentMode;
+import io.gravitee.policy.javascript.configuration.ExecutionMode;
 import io.gravitee.policy.javascript.configuration.JavascriptPolicyConfiguration;
+import io.gravitee.policy.javascript.configuration.MaxContentSizeAction;
+import io.gravitee.policy.javascript.configuration.MessageOrdering;
+import io.gravitee.policy.javascript.eval.ExecutionBudget;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.MaybeTransformer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -70,6 +82,12 @@ class JavascriptPolicyV4Test {
     @Captor
     private ArgumentCaptor<Function<Message, Maybe<Message>>> onMessageCaptor;
 
+    @Captor
+    private ArgumentCaptor<FlowableTransformer<Buffer, Buffer>> onChunksCaptor;
+
+    @Captor
+    private ArgumentCaptor<FlowableTransformer<Message, Message>> onMessagesCaptor;
+
     @BeforeAll
     public static void globalInit() throws Exception {
         final JavascriptInitializer javascriptInitializer = new JavascriptInitializer();
@@ -95,10 +113,19 @@ class JavascriptPolicyV4Test {
     }
 
     @Test
-    void should_fail_with_invalid_script() {
+    void should_fail_to_create_policy_with_invalid_script() {
+        var config = buildConfig("invalid_script.js");
+
+        assertThatThrownBy(() -> new JavascriptPolicy(config))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Unable to compile Javascript script");
+    }
+
+    @Test
+    void should_fail_with_runtime_error() {
         when(request.onBody(onBodyCaptor.capture())).thenReturn(Completable.complete());
 
-        var policy = new JavascriptPolicy(buildConfig("invalid_script.js"));
+        var policy = new JavascriptPolicy(buildConfig("runtime_error.js"));
         policy.onRequest(ctx).test().assertNoValues();
 
         ((Maybe<Buffer>) onBodyCaptor.getValue().apply(Maybe.just(Buffer.buffer()))).test()
@@ -115,6 +142,35 @@ class JavascriptPolicyV4Test {
             });
     }
 
+    @Test
+    void should_interrupt_infinite_loop() {
+        assertScriptTimesOut("infinite_loop.js");
+    }
+
+    @Test
+    void should_interrupt_slow_recursion() {
+        assertScriptTimesOut("slow_recursion.js");
+    }
+
+    @Test
+    void should_fail_with_stack_overflow() {
+        var config = buildConfig("deep_recursion.js");
+        config.setMaxExecutionTime(10_000);
+        var policy = new JavascriptPolicy(config);
+
+        when(request.onBody(onBodyCaptor.capture())).thenReturn(Completable.complete());
+        policy.onRequest(ctx).test().assertNoValues();
+
+        ((Maybe<Buffer>) onBodyCaptor.getValue().apply(Maybe.just(Buffer.buffer()))).test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertError(error -> {
+                assertThat(error).isInstanceOf(InterruptionFailureException.class);
+                ExecutionFailure executionFailure = ((InterruptionFailureException) error).getExecutionFailure();
+                assertThat(executionFailure.key()).isEqualTo("JAVASCRIPT_EXECUTION_FAILURE");
+                return true;
+            });
+    }
+
     @Test
     void should_fail_with_result_failure() {
         var policy = new JavascriptPolicy(buildConfig("break_request.js"));
@@ -136,6 +192,24 @@ class JavascriptPolicyV4Test {
             });
     }
 
+    @Test
+    void should_not_expose_engine_nor_script_context() {
+        var policy = new JavascriptPolicy(buildConfig("sandbox_access.js"));
+
+        when(request.onBody(onBodyCaptor.capture())).thenReturn(Completable.complete());
+        policy.onRequest(ctx).test().assertNoValues();
+
+        ((Maybe<Buffer>) onBodyCaptor.getValue().apply(Maybe.just(Buffer.buffer()))).test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertComplete()
+            .assertNoErrors();
+
+        assertThat(ctx.getAttributes())
+            .containsEntry("engine", "undefined")
+            .containsEntry("noSuchProperty", "undefined")
+            .containsEntry("scriptContext", "undefined");
+    }
+
     @Test
     void should_set_context_attribute_on_http_request() {
         var policy = new JavascriptPolicy(buildConfig("set_context_attribute.js"));
@@ -152,6 +226,309 @@ class JavascriptPolicyV4Test {
         assertThat(ctx.getAttributes().get("count")).isEqualTo(100);
     }
 
+    @Test
+    void should_evaluate_script_on_worker() {
+        var scriptThread = new AtomicReference<String>();
+        var attributes = new HashMap<String, Object>();
+        when(ctx.getAttributes()).thenAnswer(invocation -> {
+            scriptThread.set(Thread.currentThread().getName());
+            return attributes;
+        });
+        var config = buildConfig("set_context_attribute.js");
+        config.setExecutionMode(ExecutionMode.WORKER);
+        var policy = new JavascriptPolicy(config);
+
+        when(request.onBody(onBodyCaptor.capture())).thenReturn(Completable.complete());
+        policy.onRequest(ctx).test().assertNoValues();
+
+        ((Maybe<Buffer>) onBodyCaptor.getValue().apply(Maybe.just(Buffer.buffer()))).test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertComplete()
+            .assertNoErrors();
+
+        assertThat(attributes.get("count")).isEqualTo(100);
+        assertThat(scriptThread.get()).startsWith("gio-javascript-worker-");
+    }
+
+    @Test
+    void should_stream_request_content_chunk_by_chunk() {
+        var config = buildConfig("stream_uppercase.js");
+        config.setContentMode(ContentMode.STREAMING);
+        config.setOverrideContent(true);
+        var policy = new JavascriptPolicy(config);
+        var headers = HttpHeaders.create().set("Content-Length", "13");
+        when(request.headers()).thenReturn(headers);
+
+        when(request.onChunks(onChunksCaptor.capture())).thenReturn(Completable.complete());
+        policy.onRequest(ctx).test().assertComplete();
+
+        // "ö" is split across two chunks.
+        var world = "wörld".getBytes(StandardCharsets.UTF_8);
+        var chunks = Flowable.just(
+            Buffer.buffer("héllo "),
+            Buffer.buffer(Arrays.copyOfRange(world, 0, 2)),
+            Buffer.buffer(Arrays.copyOfRange(world, 2, world.length))
+        );
+
+        Flowable.fromPublisher(onChunksCaptor.getValue().apply(chunks))
+            .map(Buffer::toString)
+            .reduce(String::concat)
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValue("HÉLLO WÖRLD!");
+
+        assertThat(((Number) ctx.getAttributes().get("characters")).intValue()).isEqualTo(11);
+        assertThat(headers.contains("Content-Length")).isFalse();
+    }
+
+    @Test
+    void should_replace_truncated_character_at_end_of_streamed_content() {
+        var config = buildConfig("stream_uppercase.js");
+        config.setContentMode(ContentMode.STREAMING);
+        config.setOverrideContent(true);
+        var policy = new JavascriptPolicy(config);
+
+        when(response.onChunks(onChunksCaptor.capture())).thenReturn(Completable.complete());
+        policy.onResponse(ctx).test().assertComplete();
+
+        // The body ends with the first byte of "é".
+        var chunks = Flowable.just(Buffer.buffer("hello"), Buffer.buffer(new byte[] { (byte) 0xc3 }));
+
+        Flowable.fromPublisher(onChunksCaptor.getValue().apply(chunks))
+            .map(Buffer::toString)
+            .reduce(String::concat)
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValue("HELLO\uFFFD!");
+
+        assertThat(((Number) ctx.getAttributes().get("characters")).intValue()).isEqualTo(6);
+    }
+
+    @Test
+    void should_release_global_of_disposed_stream() {
+        var pool = JavascriptInitializer.SCRIPT_ENGINES.globalPool();
+        var config = buildConfig("stream_uppercase.js");
+        config.setContentMode(ContentMode.STREAMING);
+        var policy = new JavascriptPolicy(config);
+
+        when(response.onChunks(onChunksCaptor.capture())).thenReturn(Completable.complete());
+        policy.onResponse(ctx).test().assertComplete();
+
+        var discarded = pool.discarded();
+        var subscriber = Flowable.fromPublisher(onChunksCaptor.getValue().apply(Flowable.never())).test();
+        subscriber.assertNotComplete();
+        assertThat(pool.discarded()).isEqualTo(discarded);
+
+        subscriber.cancel();
+
+        assertThat(pool.discarded()).isEqualTo(discarded + 1);
+    }
+
+    @Test
+    void should_stream_response_content_unchanged_without_override() {
+        var config = buildConfig("stream_uppercase.js");
+        config.setContentMode(ContentMode.STREAMING);
+        var policy = new JavascriptPolicy(config);
+
+        when(response.onChunks(onChunksCaptor.capture())).thenReturn(Completable.complete());
+        policy.onResponse(ctx).test().assertComplete();
+
+        var first = Buffer.buffer("hello ");
+        var second = Buffer.buffer("world");
+
+        Flowable.fromPublisher(onChunksCaptor.getValue().apply(Flowable.just(first, second)))
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValues(first, second);
+
+        assertThat(((Number) ctx.getAttributes().get("characters")).intValue()).isEqualTo(11);
+    }
+
+    @Test
+    void should_stream_large_content() {
+        var config = buildConfig("stream_uppercase.js");
+        config.setContentMode(ContentMode.STREAMING);
+        var policy = new JavascriptPolicy(config);
+        when(response.onChunks(onChunksCaptor.capture())).thenReturn(Completable.complete());
+        policy.onResponse(ctx).test().assertComplete();
+
+        var chunk = new byte[64 * 1024];
+        Arrays.fill(chunk, (byte) 'a');
+        var chunks = Flowable.range(0, 256).map(i -> Buffer.buffer(chunk));
+
+        Flowable.fromPublisher(onChunksCaptor.getValue().apply(chunks))
+            .reduce(0L, (length, buffer) -> length + buffer.length())
+            .test()
+            .awaitDone(60, TimeUnit.SECONDS)
+            .assertValue(16L * 1024 * 1024);
+    }
+
+    @Test
+    void should_override_request_content_with_binary_output() {
+        var config = buildConfig("return_binary_content.js");
+        config.setOverrideContent(true);
+        var policy = new JavascriptPolicy(config);
+
+        when(request.onBody(onBodyCaptor.capture())).thenReturn(Completable.complete());
+        policy.onRequest(ctx).test().assertComplete();
+
+        onBodyCaptor
+            .getValue()
+            .apply(Maybe.just(Buffer.buffer("hello")))
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValue(buffer -> Arrays.equals(buffer.getBytes(), new byte[] { (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe }));
+
+        verify(request).contentLength(4);
+    }
+
+    @Test
+    void should_keep_request_content_returned_unchanged() {
+        var config = buildConfig("return_unchanged_content.js");
+        config.setOverrideContent(true);
+        var policy = new JavascriptPolicy(config);
+        var body = Buffer.buffer("hello");
+
+        when(request.onBody(onBodyCaptor.capture())).thenReturn(Completable.complete());
+        policy.onRequest(ctx).test().assertComplete();
+
+        onBodyCaptor.getValue().apply(Maybe.just(body)).test().awaitDone(10, TimeUnit.SECONDS).assertValue(buffer -> buffer == body);
+
+        assertThat(((Number) ctx.getAttributes().get("length")).intValue()).isEqualTo(5);
+        verify(request, never()).contentLength(anyLong());
+    }
+
+    @Test
+    void should_serialize_response_json_when_modified() {
+        var config = buildConfig("update_response_json.js");
+        config.setOverrideContent(true);
+        var policy = new JavascriptPolicy(config);
+
+        when(response.onBody(onBodyCaptor.capture())).thenReturn(Completable.complete());
+        policy.onResponse(ctx).test().assertComplete();
+
+        onBodyCaptor
+            .getValue()
+            .apply(Maybe.just(Buffer.buffer("{\"update\":true,\"name\":\"initial\"}")))
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValue(buffer -> buffer.toString().equals("{\"update\":true,\"name\":\"changed\"}"));
+
+        verify(response).contentLength(32);
+    }
+
+    @Test
+    void should_keep_response_json_when_unchanged() {
+        var config = buildConfig("update_response_json.js");
+        config.setOverrideContent(true);
+        var policy = new JavascriptPolicy(config);
+        var body = Buffer.buffer("{\"update\":false,\"name\":\"initial\"}");
+
+        when(response.onBody(onBodyCaptor.capture())).thenReturn(Completable.complete());
+        policy.onResponse(ctx).test().assertComplete();
+
+        onBodyCaptor.getValue().apply(Maybe.just(body)).test().awaitDone(10, TimeUnit.SECONDS).assertValue(buffer -> buffer == body);
+
+        verify(response, never()).contentLength(anyLong());
+    }
+
+    @Test
+    void should_keep_message_content_returned_as_view() {
+        var config = buildConfig("return_message_content_view.js");
+        config.setOverrideContent(true);
+        var policy = new JavascriptPolicy(config);
+        var content = Buffer.buffer("hello");
+        var message = DefaultMessage.builder().build();
+        message.content(content);
+        message = spy(message);
+
+        when(request.onMessage(onMessageCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageRequest(ctx).test().assertComplete();
+
+        onMessageCaptor.getValue().apply(message).test().awaitDone(10, TimeUnit.SECONDS).assertValueCount(1);
+
+        assertThat(message.content()).isSameAs(content);
+        verify(message, never()).content(any(Buffer.class));
+    }
+
+    @Test
+    void should_run_script_on_content_within_max_size() {
+        var config = buildConfig("return_binary_content.js");
+        config.setOverrideContent(true);
+        config.setMaxContentSize(10);
+        var policy = new JavascriptPolicy(config);
+
+        when(request.onChunks(onChunksCaptor.capture())).thenReturn(Completable.complete());
+        policy.onRequest(ctx).test().assertComplete();
+
+        Flowable.fromPublisher(onChunksCaptor.getValue().apply(Flowable.just(Buffer.buffer("hello"), Buffer.buffer("world"))))
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValue(buffer -> buffer.length() == 4);
+
+        verify(request).contentLength(4);
+    }
+
+    @Test
+    void should_fail_as_soon_as_content_exceeds_max_size() {
+        var config = buildConfig("return_binary_content.js");
+        config.setOverrideContent(true);
+        config.setMaxContentSize(8);
+        var policy = new JavascriptPolicy(config);
+        var read = new AtomicLong();
+
+        when(request.onChunks(onChunksCaptor.capture())).thenReturn(Completable.complete());
+        policy.onRequest(ctx).test().assertComplete();
+
+        var chunks = Flowable.range(0, 1_000).map(i -> Buffer.buffer("hello")).doOnNext(chunk -> read.incrementAndGet());
+        Flowable.fromPublisher(onChunksCaptor.getValue().apply(chunks))
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertError(InterruptionFailureException.class);
+
+        verify(ctx).interruptBodyWith(
+            argThat(failure -> failure.statusCode() == 413 && failure.key().equals("JAVASCRIPT_CONTENT_TOO_LARGE"))
+        );
+        assertThat(read.get()).isLessThan(10);
+    }
+
+    @Test
+    void should_pass_content_exceeding_max_size_through() {
+        var config = buildConfig("return_binary_content.js");
+        config.setOverrideContent(true);
+        config.setMaxContentSize(8);
+        config.setMaxContentSizeAction(MaxContentSizeAction.PASS_THROUGH);
+        var policy = new JavascriptPolicy(config);
+        var first = Buffer.buffer("hello");
+        var second = Buffer.buffer("world");
+        var third = Buffer.buffer("!");
+
+        when(response.onChunks(onChunksCaptor.capture())).thenReturn(Completable.complete());
+        policy.onResponse(ctx).test().assertComplete();
+
+        Flowable.fromPublisher(onChunksCaptor.getValue().apply(Flowable.just(first, second, third)))
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValues(first, second, third);
+
+        verify(response, never()).contentLength(anyLong());
+    }
+
+    @Test
+    void should_reject_declared_content_length_exceeding_max_size() {
+        var config = buildConfig("return_binary_content.js");
+        config.setMaxContentSize(8);
+        var policy = new JavascriptPolicy(config);
+        when(request.headers()).thenReturn(HttpHeaders.create().set("Content-Length", "9"));
+        when(ctx.interruptWith(any(ExecutionFailure.class))).thenReturn(Completable.error(new IllegalStateException("interrupted")));
+
+        policy.onRequest(ctx).test().assertError(IllegalStateException.class);
+
+        verify(ctx).interruptWith(argThat(failure -> failure.statusCode() == 413));
+        verify(request, never()).onChunks(any());
+        verify(request, never()).onBody(any());
+    }
+
     @Test
     void should_set_context_attribute_on_http_response() {
         var policy = new JavascriptPolicy(buildConfig("set_context_attribute.js"));
@@ -384,6 +761,243 @@ class JavascriptPolicyV4Test {
         assertThat(message.attributes()).containsEntry("count", 100);
     }
 
+    @Test
+    void should_drop_message() {
+        var policy = new JavascriptPolicy(buildConfig("drop_message.js"));
+        var dropped = spy(DefaultMessage.builder().headers(HttpHeaders.create().set("X-Drop", "true")).build());
+        var kept = DefaultMessage.builder().headers(HttpHeaders.create()).build();
+        var droppedMessages = JavascriptPolicy.droppedMessages();
+
+        when(request.onMessage(onMessageCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageRequest(ctx).test().assertNoValues();
+
+        onMessageCaptor.getValue().apply(dropped).test().awaitDone(10, TimeUnit.SECONDS).assertComplete().assertNoValues();
+        onMessageCaptor.getValue().apply(kept).test().awaitDone(10, TimeUnit.SECONDS).assertComplete().assertValue(kept);
+
+        verify(dropped).ack();
+        verify(ctx, never()).interruptMessageWith(any());
+        assertThat(JavascriptPolicy.droppedMessages()).isEqualTo(droppedMessages + 1);
+    }
+
+    @Test
+    void should_share_script_context_of_connection_between_messages() {
+        var policy = new JavascriptPolicy(buildConfig("capture_message_context.js"));
+        var first = DefaultMessage.builder().build();
+        var second = DefaultMessage.builder().build();
+
+        when(request.onMessage(onMessageCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageRequest(ctx).test().assertNoValues();
+
+        onMessageCaptor.getValue().apply(first).test().awaitDone(10, TimeUnit.SECONDS).assertValueCount(1);
+        onMessageCaptor.getValue().apply(second).test().awaitDone(10, TimeUnit.SECONDS).assertValueCount(1);
+
+        assertThat(first.attributes().get("context")).isNotNull().isSameAs(second.attributes().get("context"));
+    }
+
+    @Test
+    void should_evaluate_messages_in_batches() {
+        var config = buildConfig("batch_messages.js");
+        config.setOverrideContent(true);
+        config.setMessageBatchSize(2);
+        var policy = new JavascriptPolicy(config);
+        var dropped = spy(message("drop"));
+
+        when(request.onMessages(onMessagesCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageRequest(ctx).test().assertComplete();
+
+        var messages = Flowable.just(message("a"), dropped, message("b"), message("c"), message("d"));
+        Flowable.fromPublisher(onMessagesCaptor.getValue().apply(messages))
+            .map(message -> message.content().toString())
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValues("A", "B", "C", "D");
+
+        assertThat(((Number) ctx.getAttributes().get("batches")).intValue()).isEqualTo(3);
+        verify(dropped).ack();
+    }
+
+    @Test
+    void should_evaluate_messages_received_within_batch_window_together() {
+        var config = buildConfig("batch_messages.js");
+        config.setOverrideContent(true);
+        config.setMessageBatchWindow(50);
+        var policy = new JavascriptPolicy(config);
+
+        when(response.onMessages(onMessagesCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageResponse(ctx).test().assertComplete();
+
+        Flowable.fromPublisher(onMessagesCaptor.getValue().apply(Flowable.just(message("a"), message("b"), message("c"))))
+            .map(message -> message.content().toString())
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValues("A", "B", "C");
+
+        assertThat(((Number) ctx.getAttributes().get("batches")).intValue()).isEqualTo(1);
+    }
+
+    @Test
+    void should_keep_batches_closed_while_script_is_slower_than_window() {
+        var config = buildConfig("slow_batch.js");
+        config.setOverrideContent(true);
+        config.setExecutionMode(ExecutionMode.WORKER);
+        config.setMessageBatchWindow(10);
+        var policy = new JavascriptPolicy(config);
+
+        when(response.onMessages(onMessagesCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageResponse(ctx).test().assertComplete();
+
+        var messages = Flowable.range(0, 20).concatMap(i -> Flowable.just(message(String.valueOf(i))).delay(5, TimeUnit.MILLISECONDS));
+        var contents = Flowable.fromPublisher(onMessagesCaptor.getValue().apply(messages))
+            .map(message -> message.content().toString())
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertComplete()
+            .values();
+
+        assertThat(contents).containsExactlyElementsOf(IntStream.range(0, 20).mapToObj(String::valueOf).toList());
+    }
+
+    @Test
+    void should_fail_message_of_batch() {
+        var config = buildConfig("batch_messages.js");
+        config.setOverrideContent(true);
+        config.setMessageBatchSize(10);
+        var policy = new JavascriptPolicy(config);
+
+        when(request.onMessages(onMessagesCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageRequest(ctx).test().assertComplete();
+
+        Flowable.fromPublisher(onMessagesCaptor.getValue().apply(Flowable.just(message("a"), message("fail"), message("b"))))
+            .map(message -> message.content().toString())
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValues("A")
+            .assertError(InterruptionFailureException.class);
+
+        verify(ctx).interruptMessageWith(argThat(failure -> failure.statusCode() == BAD_REQUEST_400));
+    }
+
+    @Test
+    void should_evaluate_messages_concurrently_in_original_order() {
+        var config = buildConfig("slow_message.js");
+        config.setOverrideContent(true);
+        config.setExecutionMode(ExecutionMode.WORKER);
+        config.setMessageConcurrency(4);
+        var policy = new JavascriptPolicy(config);
+
+        when(request.onMessages(onMessagesCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageRequest(ctx).test().assertComplete();
+
+        Flowable.fromPublisher(onMessagesCaptor.getValue().apply(Flowable.just(message("60"), message("0"), message("30"), message("0"))))
+            .map(message -> message.content().toString())
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertValues("60", "0", "30", "0");
+    }
+
+    @Test
+    void should_evaluate_concurrent_messages_on_worker_in_inline_mode() {
+        var scriptThread = new AtomicReference<String>();
+        var attributes = new HashMap<String, Object>();
+        when(ctx.getAttributes()).thenAnswer(invocation -> {
+            scriptThread.set(Thread.currentThread().getName());
+            return attributes;
+        });
+        var config = buildConfig("set_context_attribute.js");
+        config.setMessageConcurrency(4);
+        var policy = new JavascriptPolicy(config);
+
+        when(request.onMessages(onMessagesCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageRequest(ctx).test().assertComplete();
+
+        Flowable.fromPublisher(onMessagesCaptor.getValue().apply(Flowable.just(message("a"), message("b"))))
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertComplete()
+            .assertValueCount(2);
+
+        assertThat(attributes.get("count")).isEqualTo(100);
+        assertThat(scriptThread.get()).startsWith("gio-javascript-worker-");
+    }
+
+    @Test
+    void should_keep_order_of_messages_sharing_ordering_header() {
+        var config = buildConfig("slow_message.js");
+        config.setOverrideContent(true);
+        config.setExecutionMode(ExecutionMode.WORKER);
+        config.setMessageConcurrency(4);
+        config.setMessageOrdering(MessageOrdering.HEADER);
+        config.setMessageOrderingHeader("X-Key");
+        var policy = new JavascriptPolicy(config);
+
+        when(request.onMessages(onMessagesCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageRequest(ctx).test().assertComplete();
+
+        var messages = Flowable.just(keyedMessage("a", "a:60"), keyedMessage("b", "b:0"), keyedMessage("a", "a:0"), message("0"));
+        var contents = Flowable.fromPublisher(onMessagesCaptor.getValue().apply(messages))
+            .map(message -> message.content().toString())
+            .test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertComplete()
+            .values();
+
+        assertThat(contents).containsExactlyInAnyOrder("a:60", "b:0", "a:0", "0").containsSubsequence("a:60", "a:0");
+    }
+
+    @Test
+    void should_emit_every_message_evaluated_concurrently_in_order() {
+        var messages = 200;
+        var config = buildConfig("slow_message.js");
+        config.setOverrideContent(true);
+        config.setMessageConcurrency(16);
+        var policy = new JavascriptPolicy(config);
+
+        when(request.onMessages(onMessagesCaptor.capture())).thenReturn(Completable.complete());
+        policy.onMessageRequest(ctx).test().assertComplete();
+
+        var contents = Flowable.fromPublisher(onMessagesCaptor.getValue().apply(Flowable.range(0, messages).map(i -> message(i + ":0"))))
+            .map(message -> message.content().toString())
+            .test()
+            .awaitDone(60, TimeUnit.SECONDS)
+            .assertComplete()
+            .values();
+
+        assertThat(contents).containsExactlyElementsOf(IntStream.range(0, messages).mapToObj(i -> i + ":0").toList());
+    }
+
+    private static Message keyedMessage(String key, String content) {
+        var message = DefaultMessage.builder().headers(HttpHeaders.create().set("X-Key", key)).build();
+        message.content(Buffer.buffer(content));
+        return message;
+    }
+
+    private static Message message(String content) {
+        var message = DefaultMessage.builder().build();
+        message.content(Buffer.buffer(content));
+        return message;
+    }
+
+    private void assertScriptTimesOut(String script) {
+        var timeouts = ExecutionBudget.timeouts();
+        var config = buildConfig(script);
+        config.setMaxExecutionTime(100);
+        var policy = new JavascriptPolicy(config);
+
+        when(request.onBody(onBodyCaptor.capture())).thenReturn(Completable.complete());
+        policy.onRequest(ctx).test().assertNoValues();
+
+        ((Maybe<Buffer>) onBodyCaptor.getValue().apply(Maybe.just(Buffer.buffer()))).test()
+            .awaitDone(10, TimeUnit.SECONDS)
+            .assertError(error -> {
+                assertThat(error).isInstanceOf(InterruptionFailureException.class);
+                ExecutionFailure executionFailure = ((InterruptionFailureException) error).getExecutionFailure();
+                assertThat(executionFailure.key()).isEqualTo("JAVASCRIPT_EXECUTION_TIMEOUT");
+                assertThat(executionFailure.statusCode()).isEqualTo(INTERNAL_SERVER_ERROR_500);
+                return true;
+            });
+        assertThat(ExecutionBudget.timeouts()).isGreaterThan(timeouts);
+    }
+
     private static JavascriptPolicyConfiguration buildConfig(String script) {
         var config = new JavascriptPolicyConfiguration();
         config.setScript(loadScript(script));
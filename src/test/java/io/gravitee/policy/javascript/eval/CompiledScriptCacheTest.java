@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openjdk.nashorn.api.scripting.NashornScriptEngineFactory;
+
+class CompiledScriptCacheTest {
+
+    private ScriptEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new NashornScriptEngineFactory().getScriptEngine("-strict", "--no-java");
+    }
+
+    @Test
+    void should_compile_script_only_once() throws ScriptException {
+        var cache = new CompiledScriptCache(10);
+
+        CompiledScript first = cache.get(engine, "1 + 1");
+        CompiledScript second = cache.get(engine, "1 + 1");
+
+        assertThat(second).isSameAs(first);
+        assertThat(cache.misses()).isEqualTo(1);
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void should_evaluate_compiled_script_against_each_context() throws ScriptException {
+        var cache = new CompiledScriptCache(10);
+        var compiled = cache.get(engine, "value * 2");
+
+        assertThat(((Number) compiled.eval(newContext(21))).intValue()).isEqualTo(42);
+        assertThat(((Number) compiled.eval(newContext(50))).intValue()).isEqualTo(100);
+    }
+
+    @Test
+    void should_evict_least_recently_used_script() throws ScriptException {
+        var cache = new CompiledScriptCache(2);
+
+        CompiledScript first = cache.get(engine, "'first'");
+        cache.get(engine, "'second'");
+        cache.get(engine, "'first'");
+        cache.get(engine, "'third'");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.evictions()).isEqualTo(1);
+        assertThat(cache.get(engine, "'first'")).isSameAs(first);
+        assertThat(cache.misses()).isEqualTo(3);
+    }
+
+    @Test
+    void should_not_share_compiled_scripts_between_engines() throws ScriptException {
+        var cache = new CompiledScriptCache(10);
+        var otherEngine = new NashornScriptEngineFactory().getScriptEngine("-strict", "--no-java");
+
+        assertThat(cache.get(otherEngine, "1 + 1")).isNotSameAs(cache.get(engine, "1 + 1"));
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void should_not_cache_invalid_script() {
+        var cache = new CompiledScriptCache(10);
+
+        assertThatThrownBy(() -> cache.get(engine, "this is not javascript")).isInstanceOf(ScriptException.class);
+        assertThat(cache.size()).isZero();
+    }
+
+    private ScriptContext newContext(int value) {
+        var bindings = engine.createBindings();
+        bindings.put("value", value);
+
+        var context = new SimpleScriptContext();
+        context.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        return context;
+    }
+}
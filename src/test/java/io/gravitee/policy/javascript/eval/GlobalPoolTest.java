@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openjdk.nashorn.api.scripting.NashornScriptEngineFactory;
+
+class GlobalPoolTest {
+
+    private ScriptEngine engine;
+    private GlobalPool pool;
+
+    @BeforeEach
+    void setUp() {
+        engine = new NashornScriptEngineFactory().getScriptEngine("-strict", "--no-java");
+        pool = new GlobalPool(engine, new ScriptSandbox(engine), bindings -> bindings.put("shared", "value"), 1);
+    }
+
+    @Test
+    void should_reuse_released_global() {
+        var first = pool.acquire();
+        pool.release(first);
+
+        assertThat(pool.acquire()).isSameAs(first);
+        assertThat(pool.created()).isEqualTo(1);
+        assertThat(pool.reused()).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_leak_state_to_next_execution() throws ScriptException {
+        var first = pool.acquire();
+        first.bindings().put("context", "first");
+        eval(
+            first,
+            """
+            var leaked = context;
+            this.other = 'leaked';
+            shared = 'overridden';
+            Array.prototype.evil = function () { return 'leaked'; };
+            JSON.parse = function () { return 'leaked'; };
+            delete Math.max;
+            """
+        );
+        pool.release(first);
+
+        var second = pool.acquire();
+        assertThat(second).isSameAs(first);
+        assertThat(
+            eval(
+                second,
+                "[typeof context, typeof leaked, typeof other, shared, typeof [].evil, JSON.parse('1'), Math.max(1, 2)].join()"
+            )
+        ).isEqualTo("undefined,undefined,undefined,value,undefined,1,2");
+    }
+
+    @Test
+    void should_not_leak_properties_of_built_in_functions() throws ScriptException {
+        var first = pool.acquire();
+        eval(
+            first,
+            """
+            JSON.parse.cache = 'leaked';
+            Math.max.cache = { secret: 'leaked' };
+            Array.prototype.map.cache = 'leaked';
+            Object.keys.cache = 'leaked';
+            parseInt.cache = 'leaked';
+            """
+        );
+        pool.release(first);
+
+        var second = pool.acquire();
+        assertThat(second).isSameAs(first);
+        assertThat(
+            eval(
+                second,
+                """
+                [typeof JSON.parse.cache, typeof Math.max.cache, typeof [].map.cache, typeof Object.keys.cache,
+                    typeof parseInt.cache].join()
+                """
+            )
+        ).isEqualTo("undefined,undefined,undefined,undefined,undefined");
+    }
+
+    @Test
+    void should_not_leak_properties_of_other_built_ins() throws ScriptException {
+        var first = pool.acquire();
+        eval(
+            first,
+            """
+            Function.cache = 'leaked';
+            Array.cache = 'leaked';
+            Int8Array.prototype.cache = 'leaked';
+            Uint8Array.cache = 'leaked';
+            Error.prototype.name = 'Leaked';
+            RegExp.prototype.exec.cache = 'leaked';
+            /(sec)ret/.exec('secret');
+            """
+        );
+        pool.release(first);
+
+        var second = pool.acquire();
+        assertThat(second).isSameAs(first);
+        assertThat(
+            eval(
+                second,
+                """
+                [typeof Function.cache, typeof Array.cache, typeof new Int8Array(1).cache, typeof Uint8Array.cache, new Error().name,
+                    typeof RegExp.prototype.exec.cache, RegExp.$1, RegExp.lastMatch].join()
+                """
+            )
+        ).isEqualTo("undefined,undefined,undefined,undefined,Error,undefined,,");
+    }
+
+    @Test
+    void should_discard_global_whose_built_in_prototype_has_been_replaced() throws ScriptException {
+        var first = pool.acquire();
+        eval(first, "JSON.__proto__ = { parse: function () { return 'leaked'; } };");
+        pool.release(first);
+
+        assertThat(pool.acquire()).isNotSameAs(first);
+        assertThat(pool.discarded()).isEqualTo(1);
+    }
+
+    @Test
+    void should_keep_sandbox_on_reused_global() throws ScriptException {
+        var global = pool.acquire();
+        pool.release(global);
+        global = pool.acquire();
+
+        assertThat(eval(global, "typeof engine + ':' + typeof __noSuchProperty__")).isEqualTo("undefined:undefined");
+    }
+
+    @Test
+    void should_discard_global_which_cannot_be_restored() throws ScriptException {
+        var first = pool.acquire();
+        eval(first, "Object.defineProperty(this, 'constant', { value: 1 }); Object.freeze(Array.prototype);");
+        pool.release(first);
+
+        assertThat(pool.acquire()).isNotSameAs(first);
+        assertThat(pool.discarded()).isEqualTo(1);
+    }
+
+    @Test
+    void should_create_new_global_for_each_execution_without_idle_globals() {
+        var noReusePool = new GlobalPool(engine, new ScriptSandbox(engine), bindings -> {}, 0);
+
+        var first = noReusePool.acquire();
+        noReusePool.release(first);
+
+        assertThat(noReusePool.acquire()).isNotSameAs(first);
+        assertThat(noReusePool.created()).isEqualTo(2);
+    }
+
+    @Test
+    void should_release_global_once_evaluation_is_over() {
+        var global = pool.acquire();
+        var scriptContext = new PooledScriptContext(pool, global);
+
+        scriptContext.evaluating();
+        scriptContext.release();
+        assertThat(pool.acquire()).isNotSameAs(global);
+
+        scriptContext.evaluated();
+        scriptContext.release();
+        assertThat(pool.acquire()).isSameAs(global);
+        assertThat(pool.acquire()).isNotSameAs(global);
+    }
+
+    private Object eval(GlobalPool.PooledGlobal global, String script) throws ScriptException {
+        return engine.eval(script, new PooledScriptContext(pool, global));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import javax.script.Compilable;
+import javax.script.ScriptEngine;
+import org.apache.commons.lang3.ArrayUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openjdk.nashorn.api.scripting.NashornScriptEngineFactory;
+
+class PersistentCodeCacheTest {
+
+    @TempDir
+    Path baseDirectory;
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(PersistentCodeCache.NASHORN_CODE_CACHE_PROPERTY);
+        System.clearProperty(PersistentCodeCache.NASHORN_TYPE_INFO_CACHE_PROPERTY);
+    }
+
+    @Test
+    void should_delete_cache_of_other_versions() throws IOException {
+        var previousVersion = new PersistentCodeCache(baseDirectory, "1.0.0", Long.MAX_VALUE);
+        previousVersion.prepare();
+        Files.writeString(Files.createDirectories(previousVersion.directory().resolve("code")).resolve("script"), "compiled");
+
+        var codeCache = new PersistentCodeCache(baseDirectory, "2.0.0", Long.MAX_VALUE);
+        codeCache.prepare();
+
+        assertThat(previousVersion.directory()).doesNotExist();
+        assertThat(codeCache.directory()).isDirectory();
+    }
+
+    @Test
+    void should_keep_directories_not_created_by_policy() throws IOException {
+        var sibling = Files.createDirectories(baseDirectory.resolve("1.0.0"));
+        Files.writeString(sibling.resolve("data"), "not a cache");
+        var foreign = Files.createDirectories(baseDirectory.resolve(PersistentCodeCache.OWNED_DIRECTORY).resolve("foreign"));
+        Files.writeString(foreign.resolve("data"), "not a cache either");
+
+        new PersistentCodeCache(baseDirectory, "2.0.0", Long.MAX_VALUE).prepare();
+
+        assertThat(sibling.resolve("data")).hasContent("not a cache");
+        assertThat(foreign.resolve("data")).hasContent("not a cache either");
+    }
+
+    @Test
+    void should_prune_oldest_files_above_max_size() throws IOException {
+        var codeCache = new PersistentCodeCache(baseDirectory, "1.0.0", 20);
+        var directory = Files.createDirectories(codeCache.directory().resolve("code"));
+        var oldest = writeFile(directory.resolve("oldest"), 1_000);
+        var older = writeFile(directory.resolve("older"), 2_000);
+        var newest = writeFile(directory.resolve("newest"), 3_000);
+
+        codeCache.prepare();
+
+        assertThat(oldest).doesNotExist();
+        assertThat(older).exists();
+        assertThat(newest).exists();
+    }
+
+    @Test
+    void should_point_nashorn_to_versioned_directory_while_engines_are_created() {
+        var codeCache = new PersistentCodeCache(baseDirectory, "1.0.0", Long.MAX_VALUE);
+        codeCache.prepare();
+
+        var codeCacheProperty = codeCache.createEngines(() -> System.getProperty(PersistentCodeCache.NASHORN_CODE_CACHE_PROPERTY));
+
+        assertThat(codeCache.engineOptions()).containsExactly("--persistent-code-cache=true");
+        assertThat(codeCacheProperty).isEqualTo(
+            baseDirectory.resolve(PersistentCodeCache.OWNED_DIRECTORY).resolve("1.0.0").resolve("code").toString()
+        );
+        assertThat(System.getProperty(PersistentCodeCache.NASHORN_CODE_CACHE_PROPERTY)).isNull();
+        assertThat(System.getProperty(PersistentCodeCache.NASHORN_TYPE_INFO_CACHE_PROPERTY)).isNull();
+    }
+
+    @Test
+    void should_keep_nashorn_directory_defined_by_gateway() {
+        System.setProperty(PersistentCodeCache.NASHORN_CODE_CACHE_PROPERTY, "/gateway/code-cache");
+        var codeCache = new PersistentCodeCache(baseDirectory, "1.0.0", Long.MAX_VALUE);
+        codeCache.prepare();
+
+        var codeCacheProperty = codeCache.createEngines(() -> System.getProperty(PersistentCodeCache.NASHORN_CODE_CACHE_PROPERTY));
+
+        assertThat(codeCacheProperty).isEqualTo("/gateway/code-cache");
+        assertThat(System.getProperty(PersistentCodeCache.NASHORN_CODE_CACHE_PROPERTY)).isEqualTo("/gateway/code-cache");
+    }
+
+    @Test
+    void should_store_compiled_scripts_reused_by_next_engine() throws Exception {
+        var codeCache = new PersistentCodeCache(baseDirectory, "1.0.0", Long.MAX_VALUE);
+        codeCache.prepare();
+        var options = ArrayUtils.addAll(new String[] { "-strict", "--no-java" }, codeCache.engineOptions());
+        var script = largeScript();
+
+        ((Compilable) codeCache.createEngines(() -> newEngine(options))).compile(script).eval();
+        var stored = cachedFiles(codeCache.directory());
+        assertThat(stored).isNotEmpty();
+
+        // A script recompiled by the next engine would have its classes written again.
+        ((Compilable) codeCache.createEngines(() -> newEngine(options))).compile(script).eval();
+        assertThat(cachedFiles(codeCache.directory())).isEqualTo(stored);
+    }
+
+    private static ScriptEngine newEngine(String[] options) {
+        return new NashornScriptEngineFactory().getScriptEngine(options);
+    }
+
+    private static String largeScript() {
+        // Nashorn only persists scripts of at least 1000 characters.
+        var script = new StringBuilder("var total = 0;");
+        for (int i = 0; i < 100; i++) {
+            script.append("function f").append(i).append("(value) { return value * ").append(i).append(" + 1; }\n");
+            script.append("total += f").append(i).append("(total);\n");
+        }
+        return script.append("total;").toString();
+    }
+
+    private static Path writeFile(Path path, long lastModified) throws IOException {
+        Files.writeString(path, "0123456789");
+        Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+        return path;
+    }
+
+    /**
+     * @return the last modification time of each file of the cache.
+     */
+    private static Map<Path, FileTime> cachedFiles(Path directory) throws IOException {
+        final Map<Path, FileTime> files = new HashMap<>();
+        try (Stream<Path> paths = Files.walk(directory.resolve("code"))) {
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                files.put(path, Files.getLastModifiedTime(path));
+            }
+        }
+        return files;
+    }
+}
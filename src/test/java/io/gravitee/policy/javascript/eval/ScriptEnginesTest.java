@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import org.junit.jupiter.api.Test;
+import org.openjdk.nashorn.api.scripting.NashornScriptEngineFactory;
+
+class ScriptEnginesTest {
+
+    private static final String SCRIPT =
+        "var payload = JSON.parse(context); payload.items.map(function (item) { return item * 2; }).join(',')";
+
+    @Test
+    void should_bind_thread_to_one_engine() {
+        var engines = newEngines(2);
+
+        assertThat(engines.engine()).isSameAs(engines.engine());
+        assertThat(engines.globalPool().engine()).isSameAs(engines.engine());
+    }
+
+    @Test
+    void should_assign_engines_to_threads_in_turn() throws Exception {
+        var engines = newEngines(2);
+
+        ScriptEngine first = engineOfNewThread(engines);
+        ScriptEngine second = engineOfNewThread(engines);
+        ScriptEngine third = engineOfNewThread(engines);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(third).isSameAs(first);
+        assertThat(engines.all()).containsExactly(first, second);
+    }
+
+    @Test
+    void should_require_at_least_one_engine() {
+        assertThatThrownBy(() -> newEngines(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void should_evaluate_scripts_concurrently_on_each_engine() throws Exception {
+        var threads = 4;
+        var engines = newEngines(threads);
+        var cache = new CompiledScriptCache(10);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                runs.add(
+                    executor.submit(() -> {
+                        for (int i = 0; i < 100; i++) {
+                            var pool = engines.globalPool();
+                            var scriptContext = new PooledScriptContext(pool, pool.acquire());
+                            scriptContext.setAttribute("context", "{\"items\":[1,2,3]}", ScriptContext.ENGINE_SCOPE);
+                            assertThat(cache.get(scriptContext.engine(), SCRIPT).eval(scriptContext)).isEqualTo("2,4,6");
+                            scriptContext.release();
+                        }
+                        return null;
+                    })
+                );
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ScriptEngine engineOfNewThread(ScriptEngines engines) throws Exception {
+        return CompletableFuture.supplyAsync(engines::engine, command -> new Thread(command).start()).get();
+    }
+
+    private static ScriptEngines newEngines(int count) {
+        return new ScriptEngines(
+            count,
+            () -> new NashornScriptEngineFactory().getScriptEngine("-strict", "--no-java"),
+            engine -> new GlobalPool(engine, new ScriptSandbox(engine), bindings -> {}, GlobalPool.DEFAULT_MAX_IDLE_PER_THREAD)
+        );
+    }
+}
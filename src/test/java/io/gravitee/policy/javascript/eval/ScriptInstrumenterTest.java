@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.eval;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openjdk.nashorn.api.scripting.NashornScriptEngineFactory;
+
+class ScriptInstrumenterTest {
+
+    private ScriptEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new NashornScriptEngineFactory().getScriptEngine("-strict", "--no-java");
+        engine.put(ExecutionBudget.VARIABLE_NAME, ExecutionBudget.INSTANCE);
+    }
+
+    @Test
+    void should_check_budget_in_loop_bodies() {
+        assertThat(ScriptInstrumenter.instrument("while (true) {}")).isEqualTo("while (true) {__budget__.check();}");
+        assertThat(ScriptInstrumenter.instrument("for (var i = 0; i < 3; i++) total += i;")).isEqualTo(
+            "for (var i = 0; i < 3; i++) {__budget__.check();total += i;}"
+        );
+        assertThat(ScriptInstrumenter.instrument("do x++; while (x < 3);")).isEqualTo("do {__budget__.check();x++;} while (x < 3);");
+    }
+
+    @Test
+    void should_check_budget_after_function_directives() {
+        assertThat(ScriptInstrumenter.instrument("function f(n) { 'use strict'; return n; }")).isEqualTo(
+            "function f(n) { 'use strict'; __budget__.check();return n; }"
+        );
+    }
+
+    @Test
+    void should_not_instrument_invalid_script() {
+        assertThat(ScriptInstrumenter.instrument("while (true {")).isEqualTo("while (true {");
+    }
+
+    @Test
+    void should_keep_script_result() throws ScriptException {
+        var script =
+            """
+            var total = 0;
+            outer: for (var i = 0; i < 5; i++) {
+                for (var k in [1, 2]) if (k == 1) continue outer; else total += i;
+            }
+            var j = 0;
+            do total++; while (++j < 3);
+            total;
+            """;
+
+        ExecutionBudget.start(10_000);
+        try {
+            assertThat(engine.eval(ScriptInstrumenter.instrument(script))).isEqualTo(engine.eval(script));
+        } finally {
+            ExecutionBudget.stop();
+        }
+    }
+
+    @Test
+    void should_interrupt_script_catching_timeout() {
+        var timeouts = ExecutionBudget.timeouts();
+        var script = ScriptInstrumenter.instrument("while (true) { try { while (true) {} } catch (e) {} }");
+
+        ExecutionBudget.start(100);
+        try {
+            assertThatThrownBy(() -> engine.eval(script)).isInstanceOf(ScriptTimeoutException.class);
+        } finally {
+            ExecutionBudget.stop();
+        }
+        assertThat(ExecutionBudget.timeouts()).isEqualTo(timeouts + 1);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.reactive.api.message.DefaultMessage;
+import io.gravitee.policy.javascript.model.js.message.JsMessage;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openjdk.nashorn.api.scripting.NashornScriptEngineFactory;
+
+class JsByteViewTest {
+
+    private ScriptEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new NashornScriptEngineFactory().getScriptEngine("-strict", "--no-java");
+    }
+
+    @Test
+    void should_read_bytes_like_typed_arrays() throws ScriptException {
+        engine.put("view", JsByteView.of(Buffer.buffer(new byte[] { 1, 2, (byte) 0xff, 0x10, 0x20, 'h', 'i' })));
+
+        assertThat(
+            engine.eval(
+                "[view.length, view[0], view[2], view.getInt8(2), view.getUint16(0), view.getUint16(0, true), view.getUint32(1)].join()"
+            )
+        ).isEqualTo("7,1,255,-1,258,513,50270240");
+        assertThat(engine.eval("view.slice(-2).text() + view.slice(1, 3)[1] + view.slice(5, 2).length")).isEqualTo("hi2550");
+    }
+
+    @Test
+    void should_share_bytes_with_underlying_buffer() throws ScriptException {
+        var bytes = new byte[] { 1, 2, 3 };
+        engine.put("view", new JsByteView(ByteBuffer.wrap(bytes)).slice(1, 3));
+
+        bytes[2] = 42;
+
+        assertThat(engine.eval("view[1]")).isEqualTo(42);
+    }
+
+    @Test
+    void should_convert_to_buffer() {
+        var buffer = Buffer.buffer("content");
+        var view = JsByteView.of(buffer);
+
+        assertThat(view.toBuffer()).isSameAs(buffer);
+        assertThat(view.slice(1, 4).toBuffer().toString()).isEqualTo("ont");
+    }
+
+    @Test
+    void should_be_read_only() {
+        engine.put("view", JsByteView.of(Buffer.buffer("content")));
+
+        assertThatThrownBy(() -> engine.eval("view[0] = 1")).hasMessageContaining("read-only");
+    }
+
+    @Test
+    void should_read_same_binary_content_as_existing_accessors() throws ScriptException {
+        var content = new byte[1024 * 1024];
+        Arrays.fill(content, (byte) 1);
+        var message = DefaultMessage.builder().build();
+        message.content(Buffer.buffer(content));
+        engine.put("message", new JsMessage(message));
+
+        var scripts = new String[] {
+            "var bytes = message.contentAsByteArray; var sum = 0; for (var i = 0; i < bytes.length; i++) sum += bytes[i] & 0xff; sum",
+            "var text = message.content; var sum = 0; for (var i = 0; i < text.length; i++) sum += text.charCodeAt(i); sum",
+            "var view = message.contentView; var sum = 0; for (var i = 0; i < view.length; i++) sum += view[i]; sum",
+        };
+
+        for (String script : scripts) {
+            assertThat(((Number) engine.eval(script)).intValue()).isEqualTo(content.length);
+        }
+    }
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class JsHttpClientTest {
+
+    // Compressed responses vary on Accept-Encoding, which is not part of the cache keys of the tests.
+    @RegisterExtension
+    static WireMockExtension wiremock = WireMockExtension.newInstance()
+        .options(wireMockConfig().dynamicPort().gzipDisabled(true))
+        .build();
+
+    private static Vertx vertx;
+    private static HttpClient httpClient;
+
+    @BeforeAll
+    static void init() {
+        vertx = Vertx.vertx();
+        httpClient = vertx.createHttpClient();
+    }
+
+    @AfterAll
+    static void close() {
+        vertx.close();
+    }
+
+    @Test
+    void should_complete_once_calls_are_done_without_blocking() {
+        wiremock.stubFor(get("/slow").willReturn(ok("slow").withFixedDelay(500)));
+        var client = new JsHttpClient(httpClient);
+        var body = new AtomicReference<Object>();
+
+        client.send(wiremock.baseUrl() + "/slow", (response, error) -> body.set(((JsClientResponse) response).getBody()));
+
+        var observer = client.whenComplete().test();
+        observer.assertNotComplete();
+        observer.awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertThat(body.get()).isEqualTo("slow");
+    }
+
+    @Test
+    void should_wait_for_calls_sent_from_callbacks() {
+        wiremock.stubFor(get("/first").willReturn(ok("first")));
+        wiremock.stubFor(get("/second").willReturn(ok("second").withFixedDelay(200)));
+        var client = new JsHttpClient(httpClient);
+        var body = new AtomicReference<Object>();
+
+        client.send(
+            wiremock.baseUrl() + "/first",
+            (first, firstError) ->
+                client.send(wiremock.baseUrl() + "/second", (second, secondError) -> body.set(((JsClientResponse) second).getBody()))
+        );
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertThat(body.get()).isEqualTo("second");
+    }
+
+    @Test
+    void should_fail_when_a_call_fails() {
+        var client = new JsHttpClient(httpClient);
+
+        client.send("http://localhost:1/unreachable");
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertError(Throwable.class);
+    }
+
+    @Test
+    void should_complete_immediately_without_calls() {
+        new JsHttpClient(httpClient).whenComplete().test().assertComplete();
+    }
+
+    @Test
+    void should_record_pool_occupancy() {
+        wiremock.stubFor(get("/metrics").willReturn(ok("metrics").withFixedDelay(300)));
+        var metrics = new HttpClientMetrics();
+        var client = new JsHttpClient(httpClient, metrics);
+
+        client.send(wiremock.baseUrl() + "/metrics");
+
+        assertThat(metrics.requests()).isEqualTo(1);
+        assertThat(metrics.waiting() + metrics.active()).isEqualTo(1);
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertThat(metrics.waiting()).isZero();
+        assertThat(metrics.active()).isZero();
+        assertThat(metrics.maxWaitTime()).isGreaterThanOrEqualTo(metrics.averageWaitTime());
+    }
+
+    @Test
+    void should_release_pool_occupancy_of_failed_call() {
+        var metrics = new HttpClientMetrics();
+        var client = new JsHttpClient(httpClient, metrics);
+
+        client.send("http://localhost:1/unreachable");
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertError(Throwable.class);
+        assertThat(metrics.waiting()).isZero();
+        assertThat(metrics.active()).isZero();
+    }
+
+    @Test
+    void should_fail_call_exceeding_its_timeout() {
+        wiremock.stubFor(get("/timeout").willReturn(ok("late").withFixedDelay(2000)));
+        var client = new JsHttpClient(httpClient);
+        var error = new AtomicReference<Object>();
+        var request = new JsClientRequest(wiremock.baseUrl() + "/timeout");
+        request.setTimeout(200);
+
+        client.send(request, (response, throwable) -> error.set(throwable));
+
+        client.whenComplete().test().awaitDone(1, TimeUnit.SECONDS).assertError(TimeoutException.class);
+        assertThat(error.get()).isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void should_cancel_timer_of_settled_call() {
+        wiremock.stubFor(get("/settled").willReturn(ok("settled")));
+        var client = new JsHttpClient(httpClient);
+        var request = new JsClientRequest(wiremock.baseUrl() + "/settled");
+        request.setTimeout(60_000);
+        var timers = JsHttpClient.pendingTimers();
+
+        client.send(request);
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertThat(JsHttpClient.pendingTimers()).isEqualTo(timers);
+    }
+
+    @Test
+    void should_bound_timeout_of_calls_by_timeout_of_client() throws Exception {
+        wiremock.stubFor(get("/bounded").willReturn(ok("late").withFixedDelay(2000)));
+        var client = new JsHttpClient(httpClient);
+        client.setTimeout(200);
+        var request = new JsClientRequest(wiremock.baseUrl() + "/bounded");
+        request.setTimeout(10_000);
+
+        var withoutTimeout = client.send(wiremock.baseUrl() + "/bounded");
+        var withLongerTimeout = client.send(request);
+
+        var start = System.nanoTime();
+        withoutTimeout.waitForComplete();
+        withLongerTimeout.waitForComplete();
+        assertThat(withoutTimeout.isError()).isTrue();
+        assertThat(withLongerTimeout.isError()).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+    }
+
+    @Test
+    void should_cancel_pending_calls_without_calling_back() throws Exception {
+        wiremock.stubFor(get("/cancelled").willReturn(ok("late").withFixedDelay(2000)));
+        var client = new JsHttpClient(httpClient);
+        var calledBack = new AtomicBoolean();
+
+        var exchange = client.send(wiremock.baseUrl() + "/cancelled", (response, error) -> calledBack.set(true));
+        client.cancel();
+
+        exchange.waitForComplete();
+        assertThat(exchange.isError()).isTrue();
+        client.whenComplete().test().assertError(CancellationException.class);
+        assertThat(calledBack).isFalse();
+    }
+
+    @Test
+    void should_fail_call_whose_response_declares_a_larger_size() {
+        wiremock.stubFor(get("/large").willReturn(ok("x".repeat(2048))));
+        var client = new JsHttpClient(httpClient, new HttpClientMetrics(), null, null, 1024);
+        var error = new AtomicReference<Object>();
+
+        client.send(wiremock.baseUrl() + "/large", (response, throwable) -> error.set(throwable));
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertError(HttpResponseTooLargeException.class);
+        assertThat(error.get()).isInstanceOf(HttpResponseTooLargeException.class);
+    }
+
+    @Test
+    void should_abort_streamed_response_exceeding_max_size() {
+        wiremock.stubFor(get("/streamed").willReturn(ok("x".repeat(4096)).withChunkedDribbleDelay(8, 400)));
+        var metrics = new HttpClientMetrics();
+        var client = new JsHttpClient(httpClient, metrics, null, null, 1024);
+
+        client.send(wiremock.baseUrl() + "/streamed");
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertError(HttpResponseTooLargeException.class);
+        assertThat(metrics.active()).isZero();
+    }
+
+    @Test
+    void should_expose_body_as_bytes() {
+        wiremock.stubFor(get("/bytes").willReturn(ok().withBody("caf\u00e9".getBytes(StandardCharsets.UTF_8))));
+        var client = new JsHttpClient(httpClient, new HttpClientMetrics(), null, null, 1024);
+        var response = new AtomicReference<JsClientResponse>();
+
+        client.send(wiremock.baseUrl() + "/bytes", (result, error) -> response.set((JsClientResponse) result));
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertThat(response.get().getBodyAsBytes()).isEqualTo("caf\u00e9".getBytes(StandardCharsets.UTF_8));
+        assertThat(response.get().getBody()).isEqualTo("caf\u00e9");
+    }
+
+    @Test
+    void should_send_all_calls_at_once() {
+        wiremock.stubFor(get("/one").willReturn(ok("one").withFixedDelay(500)));
+        wiremock.stubFor(get("/two").willReturn(ok("two").withFixedDelay(500)));
+        var client = new JsHttpClient(httpClient);
+        var responses = new AtomicReference<JsClientResponse[]>();
+        var errors = new AtomicReference<Throwable[]>();
+
+        var start = System.nanoTime();
+        client.all(
+            List.of(wiremock.baseUrl() + "/one", new JsClientRequest(wiremock.baseUrl() + "/two"), "http://localhost:1/unreachable"),
+            (result, error) -> {
+                responses.set((JsClientResponse[]) result);
+                errors.set((Throwable[]) error);
+            }
+        );
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(900);
+        assertThat(responses.get()[0].getBody()).isEqualTo("one");
+        assertThat(responses.get()[1].getBody()).isEqualTo("two");
+        assertThat(responses.get()[2]).isNull();
+        assertThat(errors.get()[0]).isNull();
+        assertThat(errors.get()[1]).isNull();
+        assertThat(errors.get()[2]).isNotNull();
+    }
+
+    @Test
+    void should_apply_shared_deadline_to_all_calls() throws Exception {
+        wiremock.stubFor(get("/fast").willReturn(ok("fast")));
+        wiremock.stubFor(get("/late").willReturn(ok("late").withFixedDelay(2000)));
+        var client = new JsHttpClient(httpClient);
+
+        var exchanges = client.all(List.of(wiremock.baseUrl() + "/fast", wiremock.baseUrl() + "/late"), 200, null);
+
+        exchanges.waitForComplete();
+        assertThat(exchanges.isSuccess()).isFalse();
+        assertThat(exchanges.responses()[0].getBody()).isEqualTo("fast");
+        assertThat(exchanges.errors()[1]).isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void should_answer_with_first_response_of_any_call() {
+        wiremock.stubFor(get("/quick").willReturn(ok("quick").withFixedDelay(50)));
+        wiremock.stubFor(get("/lazy").willReturn(ok("lazy").withFixedDelay(2000)));
+        var client = new JsHttpClient(httpClient);
+        var body = new AtomicReference<Object>();
+
+        client.any(
+            List.of(wiremock.baseUrl() + "/lazy", wiremock.baseUrl() + "/quick"),
+            (response, error) -> body.set(((JsClientResponse) response).getBody())
+        );
+
+        client.whenComplete().test().awaitDone(1, TimeUnit.SECONDS).assertComplete();
+        assertThat(body.get()).isEqualTo("quick");
+    }
+
+    @Test
+    void should_fail_any_call_when_all_calls_fail() {
+        var client = new JsHttpClient(httpClient);
+        var error = new AtomicReference<Object>();
+
+        client.any(
+            List.of("http://localhost:1/unreachable", "http://localhost:1/unavailable"),
+            (response, throwable) -> error.set(throwable)
+        );
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertError(Throwable.class);
+        assertThat(error.get()).isNotNull();
+    }
+
+    @Test
+    void should_serve_fresh_response_from_cache() {
+        wiremock.stubFor(get("/cached").willReturn(ok("cached").withHeader("Cache-Control", "max-age=60")));
+        var cache = new HttpResponseCache(1024 * 1024, 0, List.of());
+
+        assertThat(sendThroughCache(cache, "/cached").getBody()).isEqualTo("cached");
+        var response = sendThroughCache(cache, "/cached");
+
+        assertThat(response.getBody()).isEqualTo("cached");
+        assertThat(response.getHeaders().get("Cache-Control")).isEqualTo("max-age=60");
+        wiremock.verify(1, getRequestedFor(urlEqualTo("/cached")));
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(cache.misses()).isEqualTo(1);
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+        assertThat(cache.count()).isEqualTo(1);
+        assertThat(cache.size()).isPositive();
+    }
+
+    @Test
+    void should_revalidate_expired_response_with_etag() {
+        wiremock.stubFor(get("/etag").willReturn(ok("tagged").withHeader("ETag", "\"v1\"").withHeader("Cache-Control", "no-cache")));
+        wiremock.stubFor(get("/etag").withHeader("If-None-Match", equalTo("\"v1\"")).atPriority(1).willReturn(status(304)));
+        var cache = new HttpResponseCache(1024 * 1024, 0, List.of());
+
+        sendThroughCache(cache, "/etag");
+        var response = sendThroughCache(cache, "/etag");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getBody()).isEqualTo("tagged");
+        wiremock.verify(1, getRequestedFor(urlEqualTo("/etag")).withHeader("If-None-Match", equalTo("\"v1\"")));
+        assertThat(cache.revalidations()).isEqualTo(1);
+    }
+
+    @Test
+    void should_key_cached_responses_by_selected_headers() {
+        wiremock.stubFor(get("/tenant").willReturn(ok("tenant").withHeader("Cache-Control", "max-age=60")));
+        var cache = new HttpResponseCache(1024 * 1024, 0, List.of("X-Tenant"));
+
+        sendThroughCache(cache, new JsClientRequest(wiremock.baseUrl() + "/tenant", "GET", Map.<String, Object>of("X-Tenant", "a")));
+        sendThroughCache(cache, new JsClientRequest(wiremock.baseUrl() + "/tenant", "GET", Map.<String, Object>of("X-Tenant", "b")));
+        sendThroughCache(cache, new JsClientRequest(wiremock.baseUrl() + "/tenant", "GET", Map.<String, Object>of("X-Tenant", "a")));
+
+        wiremock.verify(2, getRequestedFor(urlEqualTo("/tenant")));
+        assertThat(cache.hits()).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_cache_requests_with_headers_outside_key() {
+        wiremock.stubFor(get("/api-key").willReturn(ok("api-key").withHeader("Cache-Control", "max-age=60")));
+        var cache = new HttpResponseCache(1024 * 1024, 60_000, List.of("X-Tenant"));
+
+        sendThroughCache(cache, new JsClientRequest(wiremock.baseUrl() + "/api-key", "GET", Map.<String, Object>of("X-Api-Key", "a")));
+        sendThroughCache(cache, new JsClientRequest(wiremock.baseUrl() + "/api-key", "GET", Map.<String, Object>of("X-Api-Key", "b")));
+
+        wiremock.verify(2, getRequestedFor(urlEqualTo("/api-key")));
+        assertThat(cache.count()).isZero();
+    }
+
+    @Test
+    void should_not_apply_default_ttl_to_responses_to_requests_with_credentials() {
+        wiremock.stubFor(get("/credentials").willReturn(ok("credentials")));
+        var cache = new HttpResponseCache(1024 * 1024, 60_000, List.of("Authorization"));
+
+        var authorized = Map.<String, Object>of("Authorization", "a");
+        sendThroughCache(cache, new JsClientRequest(wiremock.baseUrl() + "/credentials", "GET", authorized));
+        sendThroughCache(cache, new JsClientRequest(wiremock.baseUrl() + "/credentials", "GET", authorized));
+        sendThroughCache(cache, "/credentials");
+        sendThroughCache(cache, "/credentials");
+
+        wiremock.verify(3, getRequestedFor(urlEqualTo("/credentials")));
+        assertThat(cache.count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_cache_responses_forbidding_it() {
+        wiremock.stubFor(get("/no-store").willReturn(ok("no-store").withHeader("Cache-Control", "no-store")));
+        var cache = new HttpResponseCache(1024 * 1024, 60_000, List.of());
+
+        sendThroughCache(cache, "/no-store");
+        sendThroughCache(cache, "/no-store");
+
+        wiremock.verify(2, getRequestedFor(urlEqualTo("/no-store")));
+        assertThat(cache.count()).isZero();
+    }
+
+    @Test
+    void should_evict_least_recently_used_responses() {
+        wiremock.stubFor(get(urlMatching("/evict/.*")).willReturn(ok("x".repeat(1000)).withHeader("Cache-Control", "max-age=60")));
+        var cache = new HttpResponseCache(5000, 0, List.of());
+
+        sendThroughCache(cache, "/evict/a");
+        sendThroughCache(cache, "/evict/b");
+        sendThroughCache(cache, "/evict/a");
+
+        assertThat(cache.evictions()).isEqualTo(2);
+        assertThat(cache.count()).isEqualTo(1);
+        assertThat(cache.size()).isLessThanOrEqualTo(5000);
+        wiremock.verify(2, getRequestedFor(urlEqualTo("/evict/a")));
+    }
+
+    @Test
+    void should_coalesce_identical_calls_in_flight() {
+        wiremock.stubFor(get("/burst").willReturn(ok("burst").withFixedDelay(300)));
+        var coalescer = new HttpCallCoalescer();
+        var leader = new JsHttpClient(httpClient, new HttpClientMetrics(), null, coalescer);
+        var followers = new ArrayList<JsHttpClient>();
+        var bodies = new ConcurrentLinkedQueue<String>();
+
+        // The leader alters its own response, the followers get the response as received.
+        leader.send(wiremock.baseUrl() + "/burst", (response, error) -> ((JsClientResponse) response).setBody("altered"));
+        for (int i = 0; i < 4; i++) {
+            var follower = new JsHttpClient(httpClient, new HttpClientMetrics(), null, coalescer);
+            follower.send(wiremock.baseUrl() + "/burst", (response, error) -> bodies.add(((JsClientResponse) response).getBody()));
+            followers.add(follower);
+        }
+
+        assertThat(coalescer.inFlight()).isEqualTo(1);
+        leader.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        followers.forEach(follower -> follower.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete());
+
+        assertThat(bodies).containsExactly("burst", "burst", "burst", "burst");
+        assertThat(coalescer.coalesced()).isEqualTo(4);
+        assertThat(coalescer.inFlight()).isZero();
+        wiremock.verify(1, getRequestedFor(urlEqualTo("/burst")));
+    }
+
+    @Test
+    void should_not_coalesce_unsafe_or_different_calls() {
+        wiremock.stubFor(any(urlEqualTo("/distinct")).willReturn(ok("distinct").withFixedDelay(200)));
+        var coalescer = new HttpCallCoalescer();
+        var clients = new ArrayList<JsHttpClient>();
+        var url = wiremock.baseUrl() + "/distinct";
+
+        for (var request : List.of(
+            new JsClientRequest(url, "POST"),
+            new JsClientRequest(url, "POST"),
+            new JsClientRequest(url, "GET", Map.<String, Object>of("X-Tenant", "a")),
+            new JsClientRequest(url, "GET", Map.<String, Object>of("X-Tenant", "b"))
+        )) {
+            var client = new JsHttpClient(httpClient, new HttpClientMetrics(), null, coalescer);
+            client.send(request);
+            clients.add(client);
+        }
+        clients.forEach(client -> client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete());
+
+        assertThat(coalescer.coalesced()).isZero();
+        wiremock.verify(4, anyRequestedFor(urlEqualTo("/distinct")));
+    }
+
+    @Test
+    void should_share_failure_of_coalesced_call() {
+        var coalescer = new HttpCallCoalescer();
+        var leader = new JsHttpClient(httpClient, new HttpClientMetrics(), null, coalescer);
+        var follower = new JsHttpClient(httpClient, new HttpClientMetrics(), null, coalescer);
+        var error = new AtomicReference<Object>();
+
+        leader.send("http://localhost:1/unreachable");
+        follower.send("http://localhost:1/unreachable", (response, throwable) -> error.set(throwable));
+
+        follower.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertError(Throwable.class);
+        assertThat(error.get()).isNotNull();
+        assertThat(coalescer.inFlight()).isZero();
+    }
+
+    @Test
+    void should_call_back_coalesced_call_once_script_of_worker_has_returned() {
+        wiremock.stubFor(get("/worker").willReturn(ok("worker").withFixedDelay(200)));
+        var coalescer = new HttpCallCoalescer();
+        var leader = new JsHttpClient(httpClient, new HttpClientMetrics(), null, coalescer);
+        var follower = new JsHttpClient(httpClient, new HttpClientMetrics(), null, coalescer);
+        var events = new ConcurrentLinkedQueue<String>();
+
+        // The test thread, outside of Vert.x, stands for a worker evaluating the script of the follower.
+        leader.send(wiremock.baseUrl() + "/worker");
+        follower.scriptStarted();
+        follower.send(wiremock.baseUrl() + "/worker", (response, error) -> events.add("callback"));
+        leader.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        events.add("last statement");
+        follower.scriptReturned();
+
+        follower.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertThat(events).containsExactly("last statement", "callback");
+    }
+
+    @Test
+    void should_call_back_cached_call_once_script_of_worker_has_returned() {
+        wiremock.stubFor(get("/worker-cached").willReturn(ok("cached").withHeader("Cache-Control", "max-age=60")));
+        var cache = new HttpResponseCache(1024 * 1024, 0, List.of());
+        sendThroughCache(cache, "/worker-cached");
+        var client = new JsHttpClient(httpClient, new HttpClientMetrics(), cache);
+        var events = new ConcurrentLinkedQueue<String>();
+
+        client.scriptStarted();
+        client.send(wiremock.baseUrl() + "/worker-cached", (response, error) -> events.add("callback"));
+        events.add("sent");
+        client.scriptReturned();
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        assertThat(events).containsExactly("sent", "callback");
+        assertThat(cache.hits()).isEqualTo(1);
+    }
+
+    private static JsClientResponse sendThroughCache(HttpResponseCache cache, String path) {
+        return sendThroughCache(cache, new JsClientRequest(wiremock.baseUrl() + path));
+    }
+
+    private static JsClientResponse sendThroughCache(HttpResponseCache cache, JsClientRequest request) {
+        var client = new JsHttpClient(httpClient, new HttpClientMetrics(), cache);
+        var response = new AtomicReference<JsClientResponse>();
+
+        client.send(request, (result, error) -> response.set((JsClientResponse) result));
+
+        client.whenComplete().test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+        return response.get();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.reactive.api.context.http.HttpPlainRequest;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class JsHttpRequestTest {
+
+    @Test
+    void should_decode_content_on_first_access_only() {
+        var decodings = new AtomicInteger();
+        var buffer = mock(
+            Buffer.class,
+            invocation -> {
+                if (invocation.getMethod().getName().equals("toString")) {
+                    decodings.incrementAndGet();
+                    return "content";
+                }
+                return RETURNS_DEFAULTS.answer(invocation);
+            }
+        );
+        var request = new JsHttpRequest(mock(HttpPlainRequest.class), buffer);
+
+        assertThat(decodings).hasValue(0);
+        assertThat(request.getContent()).isEqualTo("content");
+        assertThat(request.getContent()).isEqualTo("content");
+        assertThat(decodings).hasValue(1);
+    }
+
+    @Test
+    void should_reject_content_access_without_content() {
+        var request = new JsHttpRequest(mock(HttpPlainRequest.class));
+
+        assertThatThrownBy(request::getContent).isInstanceOf(UnsupportedOperationException.class);
+    }
+}
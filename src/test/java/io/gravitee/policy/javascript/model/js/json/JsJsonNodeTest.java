@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model.js.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.reactive.api.message.DefaultMessage;
+import io.gravitee.policy.javascript.model.js.message.JsMessage;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openjdk.nashorn.api.scripting.NashornScriptEngineFactory;
+
+class JsJsonNodeTest {
+
+    private static final String CONTENT = "{\"a\":1,\"b\":{\"c\":[1,2,{\"d\":\"x\"}]},\"id\":12345678901234567890,\"f\":1.5}";
+
+    private ScriptEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new NashornScriptEngineFactory().getScriptEngine("-strict", "--no-java");
+    }
+
+    @Test
+    void should_read_values_like_parsed_json() throws ScriptException {
+        engine.put("json", JsJsonNode.parse(Buffer.buffer(CONTENT)));
+
+        assertThat(engine.eval("[json.a + 1, json.b.c.length, json.b.c[2].d, json.missing, Array.isArray(json.b.c), json.f].join('|')"))
+            .isEqualTo("2|3|x||true|1.5");
+        assertThat(engine.eval("var keys = []; for (var key in json) keys.push(key); keys.join()")).isEqualTo("a,b,id,f");
+        assertThat(engine.eval("String(json.b)")).isEqualTo("{\"c\":[1,2,{\"d\":\"x\"}]}");
+    }
+
+    @Test
+    void should_keep_content_when_unchanged() throws ScriptException {
+        var buffer = Buffer.buffer(CONTENT);
+        var json = (JsJsonNode) JsJsonNode.parse(buffer);
+        engine.put("json", json);
+
+        engine.eval("json.b.c[2].d + json.a");
+
+        assertThat(json.isModified()).isFalse();
+        assertThat(json.toBuffer()).isSameAs(buffer);
+    }
+
+    @Test
+    void should_serialize_modified_content() throws ScriptException {
+        var json = (JsJsonNode) JsJsonNode.parse(Buffer.buffer(CONTENT));
+        engine.put("json", json);
+
+        engine.eval(
+            "json.a = json.a * 2; json.b.c.push(4); json.b.c[5] = true; delete json.f; json.n = { x: [2.5, undefined, 3.0], y: undefined }"
+        );
+
+        assertThat(json.isModified()).isTrue();
+        // Untouched values, such as numbers a Javascript number cannot hold, are written back as they were read.
+        assertThat(json.toBuffer().toString()).isEqualTo(
+            "{\"a\":2,\"b\":{\"c\":[1,2,{\"d\":\"x\"},4,null,true]},\"id\":12345678901234567890,\"n\":{\"x\":[2.5,null,3]}}"
+        );
+    }
+
+    @Test
+    void should_parse_message_content_once() throws ScriptException {
+        var message = DefaultMessage.builder().build();
+        message.content(Buffer.buffer("{\"a\":1}"));
+        engine.put("message", new JsMessage(message));
+
+        assertThat(engine.eval("message.json.a = 2; message.json.a")).isEqualTo(2);
+        assertThat(engine.eval("message.json === message.json")).isEqualTo(true);
+    }
+
+    @Test
+    void should_fail_on_invalid_content() {
+        assertThatThrownBy(() -> JsJsonNode.parse(Buffer.buffer("{\"a\":"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void should_update_large_content_like_nashorn_json() throws ScriptException {
+        var content = payload(10_000);
+
+        var nashornScript = "var c = JSON.parse(content); c.items[0].name = 'changed'; c.count = c.count + 1; JSON.stringify(c)";
+        var jsonScript = "var j = json; j.items[0].name = 'changed'; j.count = j.count + 1; j";
+
+        engine.put("content", content.toString());
+        var nashornOutput = engine.eval(nashornScript);
+        engine.put("json", JsJsonNode.parse(content));
+        var jsonOutput = (JsJsonNode) engine.eval(jsonScript);
+
+        assertThat(jsonOutput.toBuffer().toString()).isEqualTo(nashornOutput.toString());
+    }
+
+    private static Buffer payload(int items) {
+        var builder = new StringBuilder("{\"count\":1,\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i).append("\",\"tags\":[\"a\",\"b\"],\"price\":");
+            builder.append(i + 0.5).append('}');
+        }
+        return Buffer.buffer(builder.append("]}").toString());
+    }
+}
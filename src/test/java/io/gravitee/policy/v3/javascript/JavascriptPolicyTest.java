@@ -38,6 +38,7 @@ import io.gravitee.policy.api.PolicyChain;
 import io.gravitee.policy.api.PolicyResult;
 import io.gravitee.policy.javascript.JavascriptInitializer;
 import io.gravitee.policy.javascript.configuration.JavascriptPolicyConfiguration;
+import io.gravitee.policy.javascript.configuration.MaxContentSizeAction;
 import io.gravitee.reporter.api.http.Metrics;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
@@ -267,6 +268,58 @@ public class JavascriptPolicyTest {
         verify(policyChain, never()).doNext(any(), any());
     }
 
+    @Test
+    public void shouldFailRequestContentExceedingMaxContentSize() throws Exception {
+        when(request.headers()).thenReturn(HttpHeaders.create());
+        when(configuration.getOnRequestContentScript()).thenReturn(loadResource("read_json.js"));
+        when(configuration.getMaxContentSize()).thenReturn(8L);
+        when(configuration.getMaxContentSizeAction()).thenReturn(MaxContentSizeAction.FAIL);
+
+        ReadWriteStream stream = new JavascriptPolicy(configuration).onRequestContent(request, response, executionContext, policyChain);
+        stream.write(Buffer.buffer("hello"));
+        verify(policyChain, never()).streamFailWith(any(PolicyResult.class));
+
+        stream.write(Buffer.buffer("world"));
+        stream.write(Buffer.buffer("!"));
+        stream.end();
+
+        verify(policyChain, times(1)).streamFailWith(
+            argThat(
+                result ->
+                    result.statusCode() == HttpStatusCode.REQUEST_ENTITY_TOO_LARGE_413 &&
+                    result.key().equals("JAVASCRIPT_CONTENT_TOO_LARGE")
+            )
+        );
+    }
+
+    @Test
+    public void shouldPassThroughRequestContentExceedingMaxContentSize() throws Exception {
+        when(request.headers()).thenReturn(HttpHeaders.create());
+        when(configuration.getOnRequestContentScript()).thenReturn(loadResource("read_json.js"));
+        when(configuration.getMaxContentSize()).thenReturn(8L);
+        when(configuration.getMaxContentSizeAction()).thenReturn(MaxContentSizeAction.PASS_THROUGH);
+
+        ReadWriteStream<Buffer> stream = new JavascriptPolicy(configuration).onRequestContent(
+            request,
+            response,
+            executionContext,
+            policyChain
+        );
+        StringBuilder content = new StringBuilder();
+        boolean[] ended = new boolean[1];
+        stream.bodyHandler(chunk -> content.append(chunk));
+        stream.endHandler(ignored -> ended[0] = true);
+
+        stream.write(Buffer.buffer("hello"));
+        stream.write(Buffer.buffer("world"));
+        stream.write(Buffer.buffer("!"));
+        stream.end();
+
+        assertEquals("helloworld!", content.toString());
+        assertTrue(ended[0]);
+        verify(policyChain, never()).streamFailWith(any(PolicyResult.class));
+    }
+
     @Test
     public void javaClassNotAllowed() {
         assertThrows(ScriptException.class, () -> {
@@ -0,0 +1,14 @@
+context.attributes.batches = (context.attributes.batches || 0) + 1;
+
+messages.forEach(function (message) {
+    if (message.content === 'drop') {
+        message.result.state = State.DROP;
+    } else if (message.content === 'fail') {
+        message.result.state = State.FAILURE;
+        message.result.code = 400;
+    }
+});
+
+Array.prototype.map.call(messages, function (message) {
+    return message.content.toUpperCase();
+});
@@ -0,0 +1 @@
+message.attributes.context = context;
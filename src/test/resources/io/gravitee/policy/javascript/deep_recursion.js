@@ -0,0 +1,5 @@
+function recurse(depth) {
+    return recurse(depth + 1) + 1;
+}
+
+recurse(0);
@@ -0,0 +1,3 @@
+if (message.headers.get('X-Drop') === 'true') {
+    result.state = State.DROP;
+}
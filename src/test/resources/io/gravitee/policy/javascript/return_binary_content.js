@@ -0,0 +1 @@
+new Uint8Array([0xca, 0xfe, 0xba, 0xbe]);
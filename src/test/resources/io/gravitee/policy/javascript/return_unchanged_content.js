@@ -0,0 +1,2 @@
+context.attributes.length = request.content.length;
+request.content;
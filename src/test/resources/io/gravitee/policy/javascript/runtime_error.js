@@ -0,0 +1,2 @@
+// noinspection JSUnresolvedReference
+thisFunctionDoesNotExist();
@@ -0,0 +1,3 @@
+context.attributes.engine = typeof engine;
+context.attributes.noSuchProperty = typeof this.__noSuchProperty__;
+context.attributes.scriptContext = typeof context.getBindings;
@@ -0,0 +1,6 @@
+var end = Date.now() + 50;
+while (Date.now() < end) {}
+
+Array.prototype.map.call(messages, function (message) {
+    return message.content;
+});
@@ -0,0 +1,4 @@
+var end = Date.now() + parseInt(message.content.split(':').pop(), 10);
+while (Date.now() < end) {}
+
+message.content;
@@ -0,0 +1,5 @@
+function fibonacci(n) {
+    return n < 2 ? n : fibonacci(n - 1) + fibonacci(n - 2);
+}
+
+fibonacci(60);
@@ -0,0 +1,11 @@
+var characters = 0;
+
+function onChunk(chunk) {
+    characters += chunk.length;
+    return chunk.toUpperCase();
+}
+
+function onEnd() {
+    context.attributes.characters = characters;
+    return '!';
+}
@@ -0,0 +1,5 @@
+var json = response.json;
+if (json.update) {
+    json.name = 'changed';
+}
+json;